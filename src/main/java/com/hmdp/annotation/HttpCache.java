@@ -0,0 +1,34 @@
+package com.hmdp.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 为GET接口开启基于版本号的HTTP条件缓存
+ * <p>
+ * 响应带上由版本号生成的ETag，请求的If-None-Match与当前ETag一致时直接返回304，不执行接口方法。
+ * 数据变更时需要调用 {@link com.hmdp.utils.CacheVersionClient#bump(String)} 增加对应的版本号。
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface HttpCache {
+
+    /**
+     * 版本号的名称，例如 shop，对应redis中的 cache:version:shop
+     */
+    String value();
+
+    /**
+     * 拼接到名称后面的路径变量，例如 id，对应redis中的 cache:version:shop:{id}，为空时不拼接
+     */
+    String pathVariable() default "";
+
+    /**
+     * 客户端无需校验即可使用缓存的秒数，0表示每次都需要校验
+     */
+    long maxAgeSeconds() default 0;
+}
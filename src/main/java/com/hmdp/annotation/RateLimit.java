@@ -0,0 +1,60 @@
+package com.hmdp.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流，同一个方法可以添加多个，全部通过才执行
+ * <p>
+ * 滑动窗口内的请求数超过limit时返回429，由 {@link com.hmdp.utils.RateLimiter} 在redis中原子计数。
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimits.class)
+public @interface RateLimit {
+
+    /**
+     * 限流的维度
+     */
+    Scope scope() default Scope.GLOBAL;
+
+    /**
+     * 窗口内允许的请求数
+     */
+    int limit();
+
+    /**
+     * 滑动窗口的长度
+     */
+    long windowSeconds() default 1;
+
+    /**
+     * 限流的名称，为空时使用 类名.方法名
+     */
+    String name() default "";
+
+    /**
+     * 被限流时返回的提示
+     */
+    String message() default "请求过于频繁，请稍后再试";
+
+    enum Scope {
+        /**
+         * 按登录用户计数，未登录时按IP计数
+         */
+        USER,
+        /**
+         * 按客户端IP计数
+         */
+        IP,
+        /**
+         * 所有请求共用一个计数
+         */
+        GLOBAL
+    }
+}
@@ -0,0 +1,42 @@
+package com.hmdp.config;
+
+import com.hmdp.service.IShopService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 启动时预热店铺缓存
+ * <p>
+ * ApplicationRunner执行完成之前应用的就绪状态为REFUSING_TRAFFIC，
+ * /actuator/health/readiness 返回未就绪，负载均衡只会把流量转发到完成预热的节点。
+ */
+@Slf4j
+@Component
+public class CacheWarmUpRunner implements ApplicationRunner {
+
+    @Resource
+    private IShopService shopService;
+
+    @Value("${hmdp.cache.warm-up.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        try {
+            int count = shopService.warmUpCache();
+            log.info("店铺缓存预热完成，数量：{}，耗时：{}ms", count, System.currentTimeMillis() - begin);
+        } catch (Exception e) {
+            // 预热失败不影响启动，缓存会在访问时按需加载
+            log.error("店铺缓存预热失败", e);
+        }
+    }
+}
@@ -1,20 +1,44 @@
 package com.hmdp.config;
 
+import com.hmdp.interceptor.AdminInterceptor;
+import com.hmdp.interceptor.HttpCacheInterceptor;
 import com.hmdp.interceptor.LoginInterceptor;
+import com.hmdp.interceptor.RateLimitInterceptor;
 import com.hmdp.interceptor.RefreshInterceptor;
+import com.hmdp.utils.CacheVersionClient;
+import com.hmdp.utils.LoginSessionStore;
+import com.hmdp.utils.RateLimiter;
+import com.hmdp.utils.SignedTokenService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import javax.annotation.Resource;
+import java.util.List;
 
 
 @Configuration
 public class MvcConfig implements WebMvcConfigurer {
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private LoginSessionStore loginSessionStore;
+
+    @Resource
+    private SignedTokenService signedTokenService;
+
+    @Resource
+    private CacheVersionClient cacheVersionClient;
+
+    @Resource
+    private RateLimiter rateLimiter;
+
+    @Value("${hmdp.rate-limit.trust-proxy:false}")
+    private boolean trustProxy;
+
+    // 可以访问运维管理接口的用户id
+    @Value("${hmdp.admin.user-ids:}")
+    private List<Long> adminUserIds;
 
 
     @Override
@@ -29,6 +53,12 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/user/login",
                         "/user/code"
                 ).order(1);
-        registry.addInterceptor(new RefreshInterceptor(stringRedisTemplate)).order(0);
+        // 运维管理接口在登录校验之后再校验管理员权限
+        registry.addInterceptor(new AdminInterceptor(adminUserIds)).addPathPatterns("/admin/**").order(1);
+        registry.addInterceptor(new RefreshInterceptor(loginSessionStore, signedTokenService)).order(0);
+        // 限流在登录校验之后执行，按用户限流时可以取到登录用户
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, trustProxy)).order(2);
+        // 条件缓存在登录校验之后执行，304响应不会绕过登录校验
+        registry.addInterceptor(new HttpCacheInterceptor(cacheVersionClient)).order(3);
     }
 }
\ No newline at end of file
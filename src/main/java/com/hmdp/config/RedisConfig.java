@@ -1,9 +1,15 @@
 package com.hmdp.config;
 
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.JsonCacheCodec;
+import com.hmdp.utils.ShopBinaryCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 @Configuration
 public class RedisConfig {
@@ -12,4 +18,18 @@ public class RedisConfig {
     public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
         return new StringRedisTemplate(redisConnectionFactory);
     }
-}
\ No newline at end of file
+
+    // 订阅redis频道，用于在各节点之间广播缓存失效等消息
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
+    // 店铺缓存的编解码器，binary为紧凑的二进制格式，json便于排查问题，两种格式都能读取已有的JSON缓存
+    @Bean
+    public CacheCodec<Shop> shopCacheCodec(@Value("${hmdp.cache.shop-codec:binary}") String codec) {
+        return "json".equalsIgnoreCase(codec) ? new JsonCacheCodec<>(Shop.class) : new ShopBinaryCodec();
+    }
+}
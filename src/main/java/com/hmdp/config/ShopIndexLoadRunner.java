@@ -0,0 +1,68 @@
+package com.hmdp.config;
+
+import com.hmdp.service.IShopService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 启动时从数据库加载店铺的查询索引
+ * <p>
+ * 店铺坐标写入redis的GEO集合和本地坐标索引，销量、评分、评论数量写入redis的排行，
+ * 店铺名称写入本地名称索引，之后由店铺的新增和更新维护。
+ * 重复加载不会产生重复数据。
+ */
+@Slf4j
+@Component
+public class ShopIndexLoadRunner implements ApplicationRunner {
+
+    @Resource
+    private IShopService shopService;
+
+    @Value("${hmdp.geo.load-on-startup:true}")
+    private boolean geoEnabled;
+
+    @Value("${hmdp.rank.load-on-startup:true}")
+    private boolean rankEnabled;
+
+    @Value("${hmdp.search.name-index.enabled:true}")
+    private boolean nameIndexEnabled;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (geoEnabled) {
+            long begin = System.currentTimeMillis();
+            try {
+                int count = shopService.loadShopGeo();
+                log.info("店铺坐标加载完成，数量：{}，耗时：{}ms", count, System.currentTimeMillis() - begin);
+            } catch (Exception e) {
+                // 加载失败不影响启动，可以通过管理接口重新加载
+                log.error("店铺坐标加载失败", e);
+            }
+        }
+        if (rankEnabled) {
+            long begin = System.currentTimeMillis();
+            try {
+                int count = shopService.loadShopRank();
+                log.info("店铺排行加载完成，数量：{}，耗时：{}ms", count, System.currentTimeMillis() - begin);
+            } catch (Exception e) {
+                // 加载失败不影响启动，可以通过管理接口重新加载
+                log.error("店铺排行加载失败", e);
+            }
+        }
+        if (nameIndexEnabled) {
+            long begin = System.currentTimeMillis();
+            try {
+                int count = shopService.loadShopNameIndex();
+                log.info("店铺名称索引加载完成，数量：{}，耗时：{}ms", count, System.currentTimeMillis() - begin);
+            } catch (Exception e) {
+                // 加载失败时按名称查询继续使用数据库
+                log.error("店铺名称索引加载失败", e);
+            }
+        }
+    }
+}
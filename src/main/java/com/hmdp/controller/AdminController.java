@@ -0,0 +1,102 @@
+package com.hmdp.controller;
+
+
+import com.hmdp.dto.Result;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IShopTypeService;
+import com.hmdp.utils.CacheRebuildScheduler;
+import com.hmdp.utils.LoginSessionStore;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * <p>
+ * 运维管理控制器
+ * </p>
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    @Resource
+    private CacheRebuildScheduler cacheRebuildScheduler;
+
+    @Resource
+    private LoginSessionStore loginSessionStore;
+
+    /**
+     * 查询店铺缓存各级的命中统计
+     * @return 本地缓存与redis缓存的命中、未命中次数
+     */
+    @GetMapping("/cache/shop/stats")
+    public Result queryShopCacheStats() {
+        return shopService.queryCacheStats();
+    }
+
+    /**
+     * 查询本节点当前的热点店铺
+     * @return 热点店铺id及滑动窗口内的估算访问次数，按访问次数倒序
+     */
+    @GetMapping("/cache/shop/hot")
+    public Result queryHotShops() {
+        return shopService.queryHotShops();
+    }
+
+    /**
+     * 查询缓存重建线程池的运行状态
+     * @return 队列深度、重建耗时、失败与拒绝次数等
+     */
+    @GetMapping("/cache/rebuild/stats")
+    public Result queryCacheRebuildStats() {
+        return Result.ok(cacheRebuildScheduler.snapshot());
+    }
+
+    /**
+     * 从数据库重新加载店铺坐标到redis的GEO集合
+     * @return 加载的店铺数量
+     */
+    @PostMapping("/geo/shop/reload")
+    public Result reloadShopGeo() {
+        return Result.ok(shopService.loadShopGeo());
+    }
+
+    /**
+     * 从数据库重新加载店铺类型的排行
+     * @return 加载的店铺数量
+     */
+    @PostMapping("/rank/shop/reload")
+    public Result reloadShopRank() {
+        return Result.ok(shopService.loadShopRank());
+    }
+
+    /**
+     * 店铺类型变更后刷新缓存，所有节点重建店铺类型快照
+     * @return 无
+     */
+    @PostMapping("/cache/shop-type/refresh")
+    public Result refreshShopTypeCache() {
+        shopTypeService.refresh();
+        return Result.ok();
+    }
+
+    /**
+     * 抽样统计登录态占用的redis内存
+     * @param sample 抽样的登录态数量
+     * @return 紧凑格式和哈希格式登录态的数量、平均字节数，以及头像的数量和平均字节数
+     */
+    @GetMapping("/login/session/memory")
+    public Result queryLoginSessionMemory(@RequestParam(value = "sample", defaultValue = "200") Integer sample) {
+        return Result.ok(loginSessionStore.sampleMemory(Math.min(Math.max(sample, 1), 10000)));
+    }
+}
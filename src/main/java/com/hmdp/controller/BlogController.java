@@ -2,6 +2,7 @@ package com.hmdp.controller;
 
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.annotation.RateLimit;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
@@ -44,6 +45,7 @@ public class BlogController {
     }
 
     @PutMapping("/like/{id}")
+    @RateLimit(scope = RateLimit.Scope.USER, limit = 10)
     public Result likeBlog(@PathVariable("id") Long id) {
         // 修改点赞数量
         blogService.update()
@@ -1,15 +1,14 @@
 package com.hmdp.controller;
 
 
-import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.annotation.HttpCache;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.service.IShopService;
-import com.hmdp.utils.SystemConstants;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import java.util.List;
 
 /**
  * <p>
@@ -32,10 +31,21 @@ public class ShopController {
      * @return 商铺详情数据
      */
     @GetMapping("/{id}")
+    @HttpCache(value = "shop", pathVariable = "id")
     public Result queryShopById(@PathVariable("id") Long id) {
         return shopService.queryById(id);
     }
 
+    /**
+     * 根据id批量查询商铺信息
+     * @param ids 商铺id，多个用逗号隔开
+     * @return 与ids顺序一致的商铺详情数据，不存在的商铺为null
+     */
+    @GetMapping("/batch")
+    public Result queryShopByIds(@RequestParam("ids") List<Long> ids) {
+        return shopService.queryByIds(ids);
+    }
+
     /**
      * 新增商铺信息
      * @param shop 商铺数据
@@ -44,9 +54,7 @@ public class ShopController {
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
         // 写入数据库
-        shopService.save(shop);
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        return shopService.saveShop(shop);
     }
 
     /**
@@ -65,37 +73,63 @@ public class ShopController {
      * 根据商铺类型分页查询商铺信息
      * @param typeId 商铺类型
      * @param current 页码
-     * @return 商铺列表
+     * @param cursor 游标分页，第一页传空字符串，之后传上一页返回的游标，传入时忽略页码，按评分排序
+     * @param sortBy 排行维度：sold、score、comments，传入时按排行滚动分页
+     * @param max 排行滚动分页时上一页的最小分值，第一页不传
+     * @param offset 排行滚动分页时与上一页最小分值相同、需要跳过的个数
+     * @param x 经度，与纬度同时传入时按距离由近到远排序，此时按页码分页
+     * @param y 纬度
+     * @return 商铺列表，游标分页时返回商铺列表和下一页的游标，排行分页时返回商铺列表、最小分值和偏移量
      */
     @GetMapping("/of/type")
     public Result queryShopByType(
             @RequestParam("typeId") Integer typeId,
-            @RequestParam(value = "current", defaultValue = "1") Integer current
+            @RequestParam(value = "current", defaultValue = "1") Integer current,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "sortBy", required = false) String sortBy,
+            @RequestParam(value = "max", required = false) Long max,
+            @RequestParam(value = "offset", defaultValue = "0") Integer offset,
+            @RequestParam(value = "x", required = false) Double x,
+            @RequestParam(value = "y", required = false) Double y
     ) {
-        // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .eq("type_id", typeId)
-                .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        if (x != null && y != null) {
+            return shopService.queryShopByType(typeId, current, x, y);
+        }
+        if (sortBy != null) {
+            return shopService.queryShopByTypeRank(typeId, sortBy, max, offset);
+        }
+        if (cursor != null) {
+            return shopService.queryShopByTypeCursor(typeId, cursor);
+        }
+        return shopService.queryShopByType(typeId, current, null, null);
     }
 
     /**
-     * 根据商铺名称关键字分页查询商铺信息
+     * 根据商铺名称关键字分页查询商铺信息，名称索引可用时按匹配程度、评分、销量排序
      * @param name 商铺名称关键字
      * @param current 页码
-     * @return 商铺列表
+     * @param cursor 游标分页，第一页传空字符串，之后传上一页返回的游标，传入时忽略页码
+     * @return 商铺列表，游标分页时返回商铺列表和下一页的游标
      */
     @GetMapping("/of/name")
     public Result queryShopByName(
             @RequestParam(value = "name", required = false) String name,
-            @RequestParam(value = "current", defaultValue = "1") Integer current
+            @RequestParam(value = "current", defaultValue = "1") Integer current,
+            @RequestParam(value = "cursor", required = false) String cursor
     ) {
-        // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .like(StrUtil.isNotBlank(name), "name", name)
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        if (cursor != null) {
+            return shopService.queryShopByNameCursor(name, cursor);
+        }
+        return shopService.queryShopByName(name, current);
+    }
+
+    /**
+     * 根据商铺名称前缀查询销量最高的商铺，用于搜索框的输入补全
+     * @param prefix 商铺名称前缀
+     * @return 商铺列表
+     */
+    @GetMapping("/suggest")
+    public Result suggestShops(@RequestParam(value = "prefix", required = false) String prefix) {
+        return shopService.suggestShops(prefix);
     }
 }
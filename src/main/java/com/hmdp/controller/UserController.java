@@ -1,12 +1,16 @@
 package com.hmdp.controller;
 
 
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.annotation.RateLimit;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.UserInfo;
 import com.hmdp.service.IUserInfoService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.LoginSessionStore;
+import com.hmdp.utils.SignedTokenService;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -34,11 +38,19 @@ public class UserController {
     @Resource
     private IUserInfoService userInfoService;
 
+    @Resource
+    private LoginSessionStore loginSessionStore;
+
+    @Resource
+    private SignedTokenService signedTokenService;
+
 
     /**
      * 发送手机验证码
      */
     @PostMapping("code")
+    @RateLimit(scope = RateLimit.Scope.IP, limit = 5, windowSeconds = 60, message = "发送验证码过于频繁，请稍后再试")
+    @RateLimit(scope = RateLimit.Scope.GLOBAL, limit = 200, message = "发送验证码的人数过多，请稍后再试")
     public Result sendCode(@RequestParam("phone") String phone, HttpSession session) {
         return userService.sendCode(phone,session);
     }
@@ -57,7 +69,13 @@ public class UserController {
      * @return 无
      */
     @PostMapping("/logout")
-    public Result logout(){
+    public Result logout(@RequestHeader(value = "authorization", required = false) String token){
+        // 签名token记入撤销名单，随机token删除登录态，其它节点同时失效
+        if (StrUtil.isNotBlank(token) && SignedTokenService.isSigned(token)) {
+            signedTokenService.revoke(token);
+        } else if (StrUtil.isNotBlank(token)) {
+            loginSessionStore.remove(token);
+        }
         UserHolder.removeUser();
         return Result.ok();
     }
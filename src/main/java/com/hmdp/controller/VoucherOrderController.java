@@ -1,6 +1,7 @@
 package com.hmdp.controller;
 
 
+import com.hmdp.annotation.RateLimit;
 import com.hmdp.dto.Result;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -19,6 +20,8 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/voucher-order")
 public class VoucherOrderController {
     @PostMapping("seckill/{id}")
+    @RateLimit(scope = RateLimit.Scope.USER, limit = 1, message = "抢购过于频繁，请稍后再试")
+    @RateLimit(scope = RateLimit.Scope.GLOBAL, limit = 2000, message = "抢购人数过多，请稍后再试")
     public Result seckillVoucher(@PathVariable("id") Long voucherId) {
         return Result.fail("功能未完成");
     }
@@ -0,0 +1,76 @@
+package com.hmdp.interceptor;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.annotation.HttpCache;
+import com.hmdp.utils.CacheVersionClient;
+import com.hmdp.utils.HttpCacheUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 处理带有 {@link HttpCache} 注解的接口的条件请求
+ * <p>
+ * 在执行接口方法之前比较ETag，一致时返回304，不需要查询数据和序列化响应。
+ */
+@Slf4j
+public class HttpCacheInterceptor implements HandlerInterceptor {
+
+    private final CacheVersionClient cacheVersionClient;
+
+    public HttpCacheInterceptor(CacheVersionClient cacheVersionClient) {
+        this.cacheVersionClient = cacheVersionClient;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 1.只处理带有注解的GET请求
+        if (!(handler instanceof HandlerMethod) || !HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        HttpCache httpCache = ((HandlerMethod) handler).getMethodAnnotation(HttpCache.class);
+        if (httpCache == null) {
+            return true;
+        }
+        // 2.拼接版本号的名称
+        String name = httpCache.value();
+        if (StrUtil.isNotBlank(httpCache.pathVariable())) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+            String value = variables == null ? null : variables.get(httpCache.pathVariable());
+            if (value == null) {
+                return true;
+            }
+            name = name + ":" + value;
+        }
+        // 3.查询版本号，redis异常时不使用条件缓存，正常执行接口
+        String etag;
+        try {
+            etag = CacheVersionClient.etag(name, cacheVersionClient.version(name));
+        } catch (Exception e) {
+            log.warn("查询缓存版本号失败，name：{}", name, e);
+            return true;
+        }
+        // 4.写入ETag和Cache-Control，304和200响应都需要
+        CacheControl cacheControl = httpCache.maxAgeSeconds() > 0
+                ? CacheControl.maxAge(httpCache.maxAgeSeconds(), TimeUnit.SECONDS)
+                : CacheControl.noCache();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        // 5.客户端的ETag与当前一致，返回304
+        if (HttpCacheUtils.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package com.hmdp.interceptor;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.annotation.RateLimit;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.utils.RateLimiter;
+import com.hmdp.utils.UserHolder;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 处理带有 {@link RateLimit} 注解的接口的限流，被限流时返回429，不执行接口方法
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+
+    // 是否信任反向代理写入的X-Forwarded-For，直接对外时必须关闭，否则客户端可以伪造IP
+    private final boolean trustProxy;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, boolean trustProxy) {
+        this.rateLimiter = rateLimiter;
+        this.trustProxy = trustProxy;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        HandlerMethod method = (HandlerMethod) handler;
+        Set<RateLimit> limits = AnnotatedElementUtils.findMergedRepeatableAnnotations(method.getMethod(), RateLimit.class);
+        for (RateLimit limit : limits) {
+            // 1.拼接计数的key：名称:维度:标识
+            String name = StrUtil.isNotBlank(limit.name()) ? limit.name()
+                    : method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+            String key = name + ":" + identity(limit.scope(), request);
+            // 2.任意一个限流不通过时返回429
+            long wait = rateLimiter.tryAcquire(key, limit.limit(), TimeUnit.SECONDS.toMillis(limit.windowSeconds()));
+            if (wait > 0) {
+                reject(response, wait, limit.message());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String identity(RateLimit.Scope scope, HttpServletRequest request) {
+        if (scope == RateLimit.Scope.GLOBAL) {
+            return "global";
+        }
+        if (scope == RateLimit.Scope.USER) {
+            UserDTO user = UserHolder.getUser();
+            if (user != null) {
+                return "user:" + user.getId();
+            }
+        }
+        return "ip:" + clientIp(request);
+    }
+
+    private String clientIp(HttpServletRequest request) {
+        if (trustProxy) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (StrUtil.isNotBlank(forwarded)) {
+                return StrUtil.subBefore(forwarded, ",", false).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, long waitMillis, String message) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMillis + 999))));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(JSONUtil.toJsonStr(Result.fail(message)));
+    }
+}
@@ -1,26 +1,26 @@
 package com.hmdp.interceptor;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import com.hmdp.dto.UserDTO;
-import com.hmdp.utils.RedisConstants;
+import com.hmdp.utils.LoginSessionStore;
+import com.hmdp.utils.SignedTokenService;
+import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.HandlerInterceptor;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 
 public class RefreshInterceptor implements HandlerInterceptor {
 
 
-    private StringRedisTemplate stringRedisTemplate;
+    private LoginSessionStore loginSessionStore;
 
-    public RefreshInterceptor(StringRedisTemplate stringRedisTemplate) {
-        this.stringRedisTemplate = stringRedisTemplate;
+    private SignedTokenService signedTokenService;
+
+    public RefreshInterceptor(LoginSessionStore loginSessionStore, SignedTokenService signedTokenService) {
+        this.loginSessionStore = loginSessionStore;
+        this.signedTokenService = signedTokenService;
     }
 
     @Override
@@ -32,30 +32,35 @@ public class RefreshInterceptor implements HandlerInterceptor {
         if (StrUtil.isBlank(token)) {
             return true;
         }
-        // 3.从redis中获取用户信息
-        String key = RedisConstants.LOGIN_USER_KEY + token;
-        Map<Object, Object> userMap = stringRedisTemplate.opsForHash().entries(key);
+        // 3.查询用户信息
+        UserDTO userDTO;
+        if (SignedTokenService.isSigned(token)) {
+            // 3.1.签名token在本地校验，剩余时间不足时签发同一会话的新token，通过响应头返回
+            SignedTokenService.Claims claims = signedTokenService.verify(token);
+            userDTO = claims == null ? null : claims.getUser();
+            String renewed = claims == null ? null : signedTokenService.renew(claims);
+            if (renewed != null) {
+                response.setHeader(SystemConstants.RENEWED_TOKEN_HEADER, renewed);
+            }
+        } else {
+            // 3.2.优先使用本地缓存，剩余时间不足时刷新token的过期时间
+            userDTO = loginSessionStore.get(token);
+        }
 
         // 4.如果用户信息为空，放行
-        if (userMap.isEmpty()) {
+        if (userDTO == null) {
             return true;
         }
 
-        // 5.将查询到的用户信息转换为UserDTO
-        UserDTO userDTO = BeanUtil.fillBeanWithMap(userMap, new UserDTO(),false);
-
-        // 6.将用户信息存入ThreadLocal
+        // 5.将用户信息存入ThreadLocal
         UserHolder.saveUser(userDTO);
 
-        // 7.刷新token的过期时间
-        stringRedisTemplate.expire(key, RedisConstants.LOGIN_USER_TTL, TimeUnit.MINUTES);
-
         return true;
     }
 
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
-        // 8.请求结束后，移除ThreadLocal中的用户信息
+        // 6.请求结束后，移除ThreadLocal中的用户信息
         UserHolder.removeUser();
     }
 }
@@ -4,6 +4,8 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -16,5 +18,33 @@ public interface IShopService extends IService<Shop> {
 
     Result queryById(Long id);
 
+    Result queryByIds(List<Long> ids);
+
+    Result queryShopByType(Integer typeId, Integer current, Double x, Double y);
+
+    Result queryShopByTypeCursor(Integer typeId, String cursor);
+
+    Result queryShopByTypeRank(Integer typeId, String sortBy, Long max, Integer offset);
+
+    Result queryShopByName(String name, Integer current);
+
+    Result queryShopByNameCursor(String name, String cursor);
+
+    Result suggestShops(String prefix);
+
+    int loadShopGeo();
+
+    int loadShopNameIndex();
+
+    int loadShopRank();
+
+    Result saveShop(Shop shop);
+
     Result update(Shop shop);
+
+    Result queryCacheStats();
+
+    Result queryHotShops();
+
+    int warmUpCache();
 }
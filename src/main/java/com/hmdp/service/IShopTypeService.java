@@ -3,6 +3,7 @@ package com.hmdp.service;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmdp.utils.ShopTypeSnapshot;
 
 /**
  * <p>
@@ -15,4 +16,15 @@ import com.baomidou.mybatisplus.extension.service.IService;
 public interface IShopTypeService extends IService<ShopType> {
 
     Result queryList();
+
+    /**
+     * 获取本节点的店铺类型快照，不存在时重建
+     * @return 数据库中没有店铺类型时返回null
+     */
+    ShopTypeSnapshot getSnapshot();
+
+    /**
+     * 店铺类型变更后刷新缓存，并通知所有节点重建快照
+     */
+    void refresh();
 }
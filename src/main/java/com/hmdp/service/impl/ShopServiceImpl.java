@@ -1,24 +1,55 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.dto.CursorResult;
 import com.hmdp.dto.Result;
-import com.hmdp.entity.RedisData;
+import com.hmdp.dto.ScrollResult;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.CacheStats;
+import com.hmdp.utils.CacheStrategy;
+import com.hmdp.utils.CacheVersionClient;
+import com.hmdp.utils.IdBloomFilter;
+import com.hmdp.utils.PageCursor;
+import com.hmdp.utils.ShopAccessStats;
+import com.hmdp.utils.ShopIndexService;
+import com.hmdp.utils.ShopNameIndex;
+import com.hmdp.utils.ShopRankService;
+import com.hmdp.utils.ShopRankType;
+import com.hmdp.utils.ShopSpatialIndex;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
-import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -30,6 +61,7 @@ import static com.hmdp.utils.RedisConstants.*;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IShopService {
 
@@ -37,187 +69,486 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheCodec<Shop> shopCacheCodec;
+
+    @Resource
+    private IdBloomFilter idBloomFilter;
+
+    @Resource
+    private CacheVersionClient cacheVersionClient;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private ShopIndexService shopIndexService;
+
+    @Resource
+    private ShopRankService shopRankService;
+
+    @Resource
+    private ShopAccessStats shopAccessStats;
+
+    @Value("${hmdp.cache.shop-local.maximum-size:1000}")
+    private int localCacheMaximumSize;
+
+    @Value("${hmdp.cache.shop-local.expire-seconds:30}")
+    private long localCacheExpireSeconds;
+
+    // 店铺缓存的查询策略，默认缓存空值解决缓存穿透
+    @Value("${hmdp.cache.shop-strategy:PASS_THROUGH}")
+    private CacheStrategy cacheStrategy;
+
+    private static final int SCAN_BATCH_SIZE = 1000;
+    // 按名称游标分页时游标的来源标记
+    private static final String NAME_CURSOR_INDEX = "idx";
+    private static final String NAME_CURSOR_DB = "db";
+
+    // 本地一级缓存，按容量LRU淘汰，按写入时间过期
+    private LRUCache<Long, Shop> localShopCache;
+
+    @PostConstruct
+    public void initLocalCache() {
+        localShopCache = CacheUtil.newLRUCache(localCacheMaximumSize, TimeUnit.SECONDS.toMillis(localCacheExpireSeconds));
+        // 订阅店铺更新消息，任意节点更新店铺后清除本节点的一级缓存
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String id = new String(message.getBody(), StandardCharsets.UTF_8);
+            log.debug("收到店铺缓存失效通知，id：{}", id);
+            localShopCache.remove(Long.valueOf(id));
+        }, new ChannelTopic(CACHE_SHOP_INVALIDATE_CHANNEL));
+        // 注册店铺id的布隆过滤器
+        idBloomFilter.register(BLOOM_SHOP, this::scanShopIds);
+    }
 
     // 根据id查询店铺信息
     @Override
     public Result queryById(Long id) {
-
-        // 缓存穿透解决方案
-        Shop shop = queryWithThough(id);
-//        saveShopToRedis(1L,10L);
-        // 逻辑过期解决热点key方案
-//        Shop shop = queryWithLogicalExpire(id);
+        CacheStats cacheStats = cacheClient.stats(CACHE_SHOP_KEY);
+        // 布隆过滤器判断id一定不存在，直接返回
+        if (!idBloomFilter.mightContain(BLOOM_SHOP, id)) {
+            cacheStats.recordBloomRejected();
+            return Result.fail("店铺不存在");
+        }
+        shopAccessStats.record(id, this::getById);
+        // 1.先查本地一级缓存，不刷新访问时间，保证按写入时间过期
+        Shop shop = localShopCache.get(id, false);
+        if (shop != null) {
+            cacheStats.recordLocalHit();
+            return Result.ok(shop);
+        }
+        cacheStats.recordLocalMiss();
+
+        // 2.热点店铺使用逻辑过期，过期后在后台重建，缓存不会冷却，未命中时直接写入逻辑过期的数据
+        if (shopAccessStats.isHot(id)) {
+            shop = cacheClient.queryHot(CACHE_SHOP_KEY, id, shopCacheCodec,
+                    this::getById, shopAccessStats.hotExpireSeconds(), TimeUnit.SECONDS);
+        } else {
+            // 3.其它店铺按配置的策略查询redis缓存，未命中时查询数据库
+            shop = cacheClient.query(cacheStrategy, CACHE_SHOP_KEY, id, shopCacheCodec,
+                    this::getById, CACHE_SHOP_EXPIRE, TimeUnit.MINUTES);
+        }
         if (shop == null) {
             return Result.fail("店铺不存在");
         }
-        // 6.返回数据
+        // 4.写入本地一级缓存
+        localShopCache.put(id, shop);
+        // 5.返回数据
         return Result.ok(shop);
     }
 
-    // 更新商铺
+    // 根据id批量查询店铺信息，按请求顺序返回，不存在的店铺为null
     @Override
-    @Transactional
-    public Result update(Shop shop) {
-        Long id = shop.getId();
-        if (id == null) {
-            return Result.fail("店铺不能为空！");
+    public Result queryByIds(List<Long> ids) {
+        if (CollUtil.isEmpty(ids)) {
+            return Result.ok(Collections.emptyList());
         }
-        // 1.更新数据库
-        updateById(shop);
-        // 2.删除redis缓存
-        stringRedisTemplate.delete(CACHE_SHOP_KEY+id);
-        return Result.ok();
+        if (ids.size() > SystemConstants.MAX_BATCH_SIZE) {
+            return Result.fail("一次最多查询" + SystemConstants.MAX_BATCH_SIZE + "个店铺");
+        }
+        return Result.ok(loadShops(ids));
     }
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
-
-    // 逻辑过期解决缓存击穿
-    public Shop queryWithLogicalExpire(Long id){
-        String key = CACHE_SHOP_KEY+id;
+    // 按id批量加载店铺，依次查询本地缓存、redis和数据库，返回列表与ids顺序一致
+    private List<Shop> loadShops(List<Long> ids) {
+        CacheStats cacheStats = cacheClient.stats(CACHE_SHOP_KEY);
+        List<Shop> shops = new ArrayList<>(Collections.nCopies(ids.size(), null));
+        List<Long> pendingIds = new ArrayList<>();
+        List<Integer> pendingIndexes = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            // 1.布隆过滤器判断id一定不存在，直接跳过
+            if (id == null || !idBloomFilter.mightContain(BLOOM_SHOP, id)) {
+                cacheStats.recordBloomRejected();
+                continue;
+            }
+            shopAccessStats.record(id, this::getById);
+            // 2.先查本地一级缓存
+            Shop shop = localShopCache.get(id, false);
+            if (shop != null) {
+                cacheStats.recordLocalHit();
+                shops.set(i, shop);
+                continue;
+            }
+            cacheStats.recordLocalMiss();
+            pendingIds.add(id);
+            pendingIndexes.add(i);
+        }
+        // 3.一级缓存未命中的店铺批量查询redis，未命中的一次性查询数据库
+        List<Shop> loaded = cacheClient.queryBatch(cacheStrategy, CACHE_SHOP_KEY, pendingIds, shopCacheCodec,
+                this::listByIds, Shop::getId, CACHE_SHOP_EXPIRE, TimeUnit.MINUTES);
+        for (int i = 0; i < loaded.size(); i++) {
+            Shop shop = loaded.get(i);
+            if (shop != null) {
+                // 4.写入本地一级缓存
+                localShopCache.put(shop.getId(), shop);
+                shops.set(pendingIndexes.get(i), shop);
+            }
+        }
+        return shops;
+    }
 
-        // 1.从redis中获取数据
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
+    // redis不可用时按id直接查询数据库，返回列表与ids顺序一致，不写入任何缓存
+    private List<Shop> loadShopsFromDb(List<Long> ids) {
+        Map<Long, Shop> shopMap = listByIds(ids).stream().collect(Collectors.toMap(Shop::getId, Function.identity()));
+        return ids.stream().map(shopMap::get).collect(Collectors.toList());
+    }
 
-        // 2.如果redis中没有数据，直接返回null
-        if (StrUtil.isBlank(shopJson)) {
-            return null;
+    // 根据类型分页查询店铺，传入坐标时按距离由近到远排序
+    @Override
+    public Result queryShopByType(Integer typeId, Integer current, Double x, Double y) {
+        // 1.判断是否需要根据坐标查询
+        if (x == null || y == null) {
+            // 不需要坐标查询，按数据库查询，只返回当前页的数据，不需要查询总数
+            Page<Shop> page = query()
+                    .eq("type_id", typeId)
+                    .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE, false));
+            return Result.ok(page.getRecords());
         }
-
-        // 3.命中，需要先把json反序列化为对象
-        RedisData redisData = JSONUtil.toBean(shopJson, RedisData.class);
-        Shop shop = JSONUtil.toBean((JSONObject) redisData.getData(), Shop.class);
-        LocalDateTime expireTime = redisData.getExpireTime();
-        // 4.判断是否过期
-        if (expireTime.isAfter(LocalDateTime.now())) {
-            // 5.1未过期，直接返回店铺信息
-            return shop;
+        // 2.计算分页参数
+        int from = (current - 1) * SystemConstants.DEFAULT_PAGE_SIZE;
+        int end = current * SystemConstants.DEFAULT_PAGE_SIZE;
+        // 3.按照距离排序、分页查询。结果：shopId、distance，redis不可用时使用本地坐标索引
+        ShopIndexService.Nearby nearby = shopIndexService.nearby(typeId, x, y, end);
+        List<ShopSpatialIndex.Neighbor> neighbors = nearby.getNeighbors();
+        if (neighbors.size() <= from) {
+            // 没有下一页了
+            return Result.ok(Collections.emptyList());
         }
-        // 5.2已过期,需要重建缓存
-        // 6.缓存重建
-        // 6.1获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        // 6.2判断是否获取锁成功
-        boolean isLock = tryLock(lockKey);
-        if (isLock) {
-            // 6.3成功，开启独立线程，实现缓存重建
-            CACHE_REBUILD_EXECUTOR.submit(()->{
-                try {
-                    this.saveShopToRedis(id,20L);
-                } catch (Exception e) {
-                    throw new RuntimeException();
-                } finally {
-                    unLock(lockKey);
-                }
-            });
+        // 4.截取 from ~ end 的部分
+        List<ShopSpatialIndex.Neighbor> pageNeighbors = neighbors.subList(from, neighbors.size());
+        List<Long> ids = pageNeighbors.stream().map(ShopSpatialIndex.Neighbor::getId).collect(Collectors.toList());
+        // 5.根据id批量查询店铺，保持距离顺序，redis不可用时直接查询数据库
+        List<Shop> shops = nearby.isRedisAvailable() ? loadShops(ids) : loadShopsFromDb(ids);
+        List<Shop> list = new ArrayList<>(shops.size());
+        for (int i = 0; i < shops.size(); i++) {
+            Shop shop = shops.get(i);
+            if (shop == null) {
+                continue;
+            }
+            // 缓存中的店铺对象是共享的，复制后再填充距离
+            Shop copy = BeanUtil.copyProperties(shop, Shop.class);
+            copy.setDistance(pageNeighbors.get(i).getDistance());
+            list.add(copy);
         }
-        // 6.返回数据
-        return shop;
+        // 6.返回
+        return Result.ok(list);
     }
 
-    public Shop queryWithThough(Long id){
-        String key = CACHE_SHOP_KEY+id;
-
-        // 1.从redis中获取数据
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-
-        // 2.如果redis中有数据，直接返回
-        if (StrUtil.isNotBlank(shopJson)) {
-            return JSONUtil.toBean(shopJson, Shop.class);
+    // 根据类型查询店铺排行，按分值范围滚动分页
+    @Override
+    public Result queryShopByTypeRank(Integer typeId, String sortBy, Long max, Integer offset) {
+        ShopRankType rankType = ShopRankType.of(sortBy);
+        if (rankType == null) {
+            return Result.fail("不支持的排序方式：" + sortBy);
         }
-
-        // 命中redis中的空值，返回错误
-        if (shopJson != null) {
-            return null;
+        // 1.查询排行，结果：按排行排序的shopId、最小分值、与最小分值相同的个数
+        ScrollResult r = shopRankService.query(rankType, typeId, max, offset);
+        if (r == null) {
+            return Result.ok();
         }
+        // 2.根据id批量查询店铺，保持排行顺序
+        @SuppressWarnings("unchecked")
+        List<Long> ids = (List<Long>) r.getList();
+        r.setList(loadShops(ids).stream().filter(Objects::nonNull).collect(Collectors.toList()));
+        // 3.返回
+        return Result.ok(r);
+    }
 
-        // 3.如果redis中没有数据，从数据库中获取数据
-        Shop shop = getById(id);
-
-        // 4.如果数据库中没有数据，返回失败
-        if (shop == null) {
-            // 将空值写入redis中
-            stringRedisTemplate.opsForValue().set(key,"", CACHE_SHOP_NULL_EXPIRE,TimeUnit.MINUTES);
-            return null;
+    // 根据类型游标分页查询店铺，按评分由高到低排序，评分相同时按id倒序
+    @Override
+    public Result queryShopByTypeCursor(Integer typeId, String cursor) {
+        // 1.解析游标，为空时从第一页开始
+        PageCursor last;
+        try {
+            last = PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return Result.fail("无效的分页游标");
         }
-
-        // 5.存在，将数据写入redis
-        stringRedisTemplate.opsForValue().set(key,JSONUtil.toJsonStr(shop), CACHE_SHOP_EXPIRE, TimeUnit.MINUTES);
-
-        // 6.返回数据
-        return shop;
+        // 2.从上一页最后一条数据之后继续查询，多查一条用于判断是否还有下一页
+        int size = SystemConstants.DEFAULT_PAGE_SIZE;
+        List<Shop> shops = query()
+                .eq("type_id", typeId)
+                .apply(last != null, "(score, id) < ({0}, {1})",
+                        last == null ? null : last.getSortValue(), last == null ? null : last.getId())
+                .orderByDesc("score", "id")
+                .last("limit " + (size + 1))
+                .list();
+        // 3.封装结果
+        return Result.ok(cursorResult(shops, size, shop -> new PageCursor(shop.getScore().longValue(), shop.getId())));
     }
 
-    public Shop queryWithMutex(Long id) {
-        String key = CACHE_SHOP_KEY;
-
-        // 1.从redis中获取数据
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
+    // 根据名称关键字分页查询店铺，名称索引可用时按匹配程度、评分、销量排序
+    @Override
+    public Result queryShopByName(String name, Integer current) {
+        int size = SystemConstants.MAX_PAGE_SIZE;
+        if (!shopIndexService.useNameIndex(name)) {
+            // 根据名称分页查询，只返回当前页的数据，不需要查询总数
+            Page<Shop> page = query()
+                    .like(StrUtil.isNotBlank(name), "name", name)
+                    .page(new Page<>(current, size, false));
+            return Result.ok(page.getRecords());
+        }
+        // 1.查询名称索引，截取 from ~ end 的部分
+        List<ShopNameIndex.Hit> hits = shopIndexService.searchName(name, null, current * size);
+        int from = (current - 1) * size;
+        if (hits.size() <= from) {
+            return Result.ok(Collections.emptyList());
+        }
+        // 2.根据id批量查询店铺，保持排序
+        return Result.ok(loadHits(hits.subList(from, hits.size())));
+    }
 
-        // 2.如果redis中有数据，直接返回
-        if (StrUtil.isNotBlank(shopJson)) {
-            return JSONUtil.toBean(shopJson, Shop.class);
+    // 根据名称关键字游标分页查询店铺，名称索引可用时按匹配程度、评分、销量排序，否则按id排序
+    @Override
+    public Result queryShopByNameCursor(String name, String cursor) {
+        // 1.解析游标，为空时从第一页开始
+        PageCursor last;
+        try {
+            last = PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return Result.fail("无效的分页游标");
         }
+        int size = SystemConstants.MAX_PAGE_SIZE;
+        boolean indexed = shopIndexService.useNameIndex(name);
+        // 名称索引的游标按排名排序，数据库的游标按id排序，索引加载前后生成的游标不能混用
+        if (last != null && (!last.isFrom(indexed ? NAME_CURSOR_INDEX : NAME_CURSOR_DB)
+                || indexed && last.getSortValue() == null)) {
+            return Result.fail("分页游标已失效，请重新查询");
+        }
+        if (indexed) {
+            // 2.从上一页最后一条结果之后继续查询名称索引，多查一条用于判断是否还有下一页
+            ShopNameIndex.Hit after = last == null ? null : new ShopNameIndex.Hit(last.getId(), last.getSortValue());
+            List<ShopNameIndex.Hit> hits = shopIndexService.searchName(name, after, size + 1);
+            CursorResult result = new CursorResult();
+            if (hits.size() > size) {
+                hits = hits.subList(0, size);
+                ShopNameIndex.Hit tail = hits.get(size - 1);
+                result.setCursor(new PageCursor(NAME_CURSOR_INDEX, tail.getRank(), tail.getId()).encode());
+            }
+            result.setList(loadHits(hits));
+            return Result.ok(result);
+        }
+        // 2.从上一页最后一条数据之后继续查询，多查一条用于判断是否还有下一页
+        List<Shop> shops = query()
+                .like(StrUtil.isNotBlank(name), "name", name)
+                .gt(last != null, "id", last == null ? null : last.getId())
+                .orderByAsc("id")
+                .last("limit " + (size + 1))
+                .list();
+        // 3.封装结果
+        return Result.ok(cursorResult(shops, size, shop -> new PageCursor(NAME_CURSOR_DB, null, shop.getId())));
+    }
 
-        // 命中redis中的空值，返回错误
-        if (shopJson != null) {
-            return null;
+    // 根据名称前缀查询销量最高的店铺，用于搜索框的输入补全
+    @Override
+    public Result suggestShops(String prefix) {
+        if (StrUtil.isBlank(prefix)) {
+            return Result.ok(Collections.emptyList());
+        }
+        if (!shopIndexService.useNameIndex(prefix)) {
+            // 名称索引还未加载，按前缀查询数据库
+            List<Shop> shops = query()
+                    .likeRight("name", prefix)
+                    .orderByDesc("sold")
+                    .last("limit " + shopIndexService.suggestTopK())
+                    .list();
+            return Result.ok(shops);
         }
+        // 前缀树的节点保存了排名最高的店铺，直接取出后批量查询
+        List<Long> ids = shopIndexService.suggest(prefix);
+        return Result.ok(loadShops(ids).stream().filter(Objects::nonNull).collect(Collectors.toList()));
+    }
 
-        String LockKey = LOCK_SHOP_KEY + id;
+    // 按名称索引的结果顺序批量查询店铺，跳过已经不存在的店铺
+    private List<Shop> loadHits(List<ShopNameIndex.Hit> hits) {
+        List<Long> ids = hits.stream().map(ShopNameIndex.Hit::getId).collect(Collectors.toList());
+        return loadShops(ids).stream().filter(Objects::nonNull).collect(Collectors.toList());
+    }
 
+    // 截取一页数据，还有下一页时用当前页最后一条数据生成游标
+    private CursorResult cursorResult(List<Shop> shops, int size, Function<Shop, PageCursor> cursorOf) {
+        CursorResult result = new CursorResult();
+        if (shops.size() > size) {
+            shops = shops.subList(0, size);
+            result.setCursor(cursorOf.apply(shops.get(size - 1)).encode());
+        }
+        result.setList(shops);
+        return result;
+    }
 
-        // 缓存重建
-        // 1.获取互斥锁
-        boolean isLock = tryLock(LockKey);
-        Shop shop = null;
-        try {
-            if (!isLock) {
-                // 获取锁失败，休眠等待重试
-                Thread.sleep(50);
-                return queryWithMutex(id);
+    // 从数据库加载全部店铺名称到本地名称索引和前缀树，返回加载的店铺数量
+    @Override
+    public int loadShopNameIndex() {
+        int count = 0;
+        long lastId = 0;
+        while (true) {
+            // 按id顺序分批查询店铺的名称、评分和销量
+            List<Shop> shops = query().select("id", "name", "score", "sold")
+                    .gt("id", lastId).orderByAsc("id").last("limit " + SCAN_BATCH_SIZE).list();
+            shopIndexService.loadNames(shops);
+            count += shops.size();
+            if (shops.size() < SCAN_BATCH_SIZE) {
+                shopIndexService.markNameIndexLoaded();
+                return count;
             }
-            // 3.如果redis中没有数据，从数据库中获取数据
-            shop = getById(id);
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+    }
 
-            // 4.如果数据库中没有数据，返回失败
-            if (shop == null) {
-                // 将空值写入redis中
-                stringRedisTemplate.opsForValue().set(key + id, "",CACHE_SHOP_NULL_EXPIRE, TimeUnit.MINUTES);
-                return null;
+    // 从数据库加载店铺的销量、评分、评论数量，按类型写入redis的排行，返回加载的店铺数量
+    @Override
+    public int loadShopRank() {
+        int count = 0;
+        long lastId = 0;
+        while (true) {
+            // 1.按id顺序分批查询店铺的排行数据
+            List<Shop> shops = query().select("id", "type_id", "sold", "score", "comments")
+                    .gt("id", lastId).orderByAsc("id").last("limit " + SCAN_BATCH_SIZE).list();
+            // 2.用管道批量写入，ZADD对已存在的店铺只更新分值，可以重复执行
+            shopRankService.addAll(shops);
+            count += shops.size();
+            if (shops.size() < SCAN_BATCH_SIZE) {
+                return count;
             }
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+    }
 
-            // 5.存在，将数据写入redis
-            stringRedisTemplate.opsForValue().set(key + id, shop.toString(),CACHE_SHOP_EXPIRE, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            e.fillInStackTrace();
-        } finally {
-            // 释放锁
-            unLock(LockKey);
+    // 从数据库加载店铺坐标，按类型写入redis的GEO集合和本地坐标索引，返回加载的店铺数量
+    @Override
+    public int loadShopGeo() {
+        int count = 0;
+        long lastId = 0;
+        while (true) {
+            // 1.按id顺序分批查询店铺的类型和坐标
+            List<Shop> shops = query().select("id", "type_id", "x", "y")
+                    .gt("id", lastId).orderByAsc("id").last("limit " + SCAN_BATCH_SIZE).list();
+            if (shops.isEmpty()) {
+                return count;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+            // 2.写入redis的GEO集合和本地坐标索引，GEOADD对已存在的店铺只更新坐标，可以重复执行
+            shopIndexService.loadGeo(shops);
+            count += shops.size();
+            if (shops.size() < SCAN_BATCH_SIZE) {
+                return count;
+            }
         }
+    }
+
+    @Override
+    public Result queryCacheStats() {
+        Map<String, Object> stats = cacheClient.stats(CACHE_SHOP_KEY).snapshot();
+        stats.put("localSize", localShopCache.size());
+        return Result.ok(stats);
+    }
+
+    @Override
+    public Result queryHotShops() {
+        return Result.ok(shopAccessStats.hotKeys());
+    }
 
-        // 6.返回数据
-        return shop;
+    // 预热店铺缓存，返回预热的店铺数量
+    @Override
+    public int warmUpCache() {
+        return shopAccessStats.warmUp(ids -> query().in("id", ids).orderByAsc("id").list());
     }
 
-    // 获取锁
-    private boolean tryLock(String key){
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.MINUTES);
-        return BooleanUtil.isTrue(flag);
+    // 新增商铺
+    @Override
+    public Result saveShop(Shop shop) {
+        // 1.写入数据库
+        save(shop);
+        // 2.将新的店铺id加入布隆过滤器
+        idBloomFilter.put(BLOOM_SHOP, shop.getId());
+        // 3.写入GEO集合和本地的坐标索引、名称索引，并通知其它节点更新
+        shopIndexService.add(shop);
+        // 4.写入店铺类型的排行
+        shopRankService.add(shop);
+        // 5.新增前查询过该id的客户端持有的是不存在时的响应，需要失效
+        cacheVersionClient.bump("shop:" + shop.getId());
+        return Result.ok(shop.getId());
     }
 
-    // 释放锁
-    private void unLock(String key){
-        stringRedisTemplate.delete(key);
+    // 更新商铺
+    @Override
+    @Transactional
+    public Result update(Shop shop) {
+        Long id = shop.getId();
+        if (id == null) {
+            return Result.fail("店铺不能为空！");
+        }
+        Shop old = getById(id);
+        if (old == null) {
+            return Result.fail("店铺不存在！");
+        }
+        // 1.更新数据库
+        updateById(shop);
+        // 2.事务提交后再删除缓存和通知其它节点，否则其它节点收到通知后可能读到旧数据重新写入缓存和索引
+        TransactionUtils.afterCommit(() -> {
+            // 2.1.删除redis缓存
+            stringRedisTemplate.delete(CACHE_SHOP_KEY + id);
+            // 2.2.删除本地缓存，并通知其它节点删除各自的本地缓存
+            localShopCache.remove(id);
+            stringRedisTemplate.convertAndSend(CACHE_SHOP_INVALIDATE_CHANNEL, id.toString());
+            // 2.3.增加店铺详情的版本号，客户端持有的ETag失效
+            cacheVersionClient.bump("shop:" + id);
+            // 2.4.店铺更新只包含部分字段，未传入的字段沿用旧值
+            Shop merged = BeanUtil.copyProperties(old, Shop.class);
+            BeanUtil.copyProperties(shop, merged, CopyOptions.create().ignoreNullValue());
+            // 2.5.更新GEO集合和本地索引，并把变化的字段通知其它节点
+            shopIndexService.update(old, merged);
+            // 2.6.类型或排行数据变化时更新排行
+            shopRankService.update(old, merged);
+        });
+        return Result.ok();
+    }
+
+    // 按id顺序分批遍历全部店铺id
+    private void scanShopIds(LongConsumer consumer) {
+        long lastId = 0;
+        while (true) {
+            List<Object> ids = listObjs(new QueryWrapper<Shop>()
+                    .select("id").gt("id", lastId).orderByAsc("id").last("limit " + SCAN_BATCH_SIZE));
+            for (Object id : ids) {
+                lastId = Long.parseLong(id.toString());
+                consumer.accept(lastId);
+            }
+            if (ids.size() < SCAN_BATCH_SIZE) {
+                return;
+            }
+        }
     }
 
+    // 预热逻辑过期的店铺缓存
     public void saveShopToRedis(Long id,Long expireSeconds){
         // 查询店铺信息
         Shop shop = getById(id);
-        // 封装逻辑过期时间
-        RedisData redisData = new RedisData();
-        redisData.setData(shop);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expireSeconds));
-        //写入redis
-        stringRedisTemplate.opsForValue().set(CACHE_SHOP_KEY+id,JSONUtil.toJsonStr(redisData));
+        // 封装逻辑过期时间并写入redis
+        cacheClient.setWithLogicalExpire(CACHE_SHOP_KEY + id, shop, shopCacheCodec, expireSeconds, TimeUnit.SECONDS);
     }
 }
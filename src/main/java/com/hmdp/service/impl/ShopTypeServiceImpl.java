@@ -8,12 +8,20 @@ import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CacheClient;
 import com.hmdp.utils.RedisConstants;
+import com.hmdp.utils.ShopTypeSnapshot;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
@@ -23,54 +31,111 @@ import java.util.List;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private CacheClient cacheClient;
+
+    // 与MVC序列化响应使用同一个ObjectMapper，预先生成的响应与直接返回Result的内容一致
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 本节点的店铺类型快照，收到失效通知后置空，下次访问时重建
+    private volatile ShopTypeSnapshot snapshot;
+    private long version;
+    // 失效次数，重建期间收到失效通知时，重建的结果不再保存为快照
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void subscribeInvalidation() {
+        // 任意节点刷新店铺类型后，清除本节点的快照
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            log.debug("收到店铺类型失效通知");
+            invalidate();
+        }, new ChannelTopic(RedisConstants.CACHE_SHOP_TYPE_INVALIDATE_CHANNEL));
+    }
+
     @Override
     public Result queryList() {
+        ShopTypeSnapshot current = getSnapshot();
+        if (current == null) {
+            return Result.fail("商铺类型不存在");
+        }
+        return Result.ok(current.getTypes());
+    }
 
-        String key = RedisConstants.CACHE_SHOP_TYPE_KEY;
-        // 1.从redis中获取数据
-        String shopTypeJson = stringRedisTemplate.opsForValue().get(key);
-
-        // 2.如果redis中有数据，直接返回
-        if (StrUtil.isNotBlank(shopTypeJson)) {
-            ObjectMapper objectMapper = new ObjectMapper();
-            try {
-                List<ShopType> typeList = objectMapper
-                        // 将 JSON 字符串（content）反序列化为指定类型的 Java 对象（valueType）
-                        .readValue(shopTypeJson,
-                                objectMapper
-                                        // 构建一个集合类型，用于反序列化为集合对象
-                                        .getTypeFactory()
-                                        .constructCollectionType(List.class, ShopType.class));
-                return Result.ok(typeList);
-            } catch (JsonProcessingException e) {
-                e.fillInStackTrace();
-                return Result.fail("商铺类型解析失败");
+    @Override
+    public ShopTypeSnapshot getSnapshot() {
+        ShopTypeSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        // 只有一个线程重建快照，其它线程等待后直接使用
+        synchronized (this) {
+            current = snapshot;
+            if (current != null) {
+                return current;
+            }
+            long generation = invalidations.get();
+            current = buildSnapshot();
+            if (generation == invalidations.get()) {
+                snapshot = current;
             }
+            return current;
         }
-        // 3.如果redis中没有数据，从数据库中获取数据
-         List<ShopType> typeList = query().orderByAsc("sort").list();
+    }
 
-        // 4.如果数据库中没有数据，返回失败
-        if (typeList == null) {
-            return Result.fail("商铺类型不存在");
-        }
+    private void invalidate() {
+        invalidations.incrementAndGet();
+        snapshot = null;
+    }
+
+    @Override
+    public void refresh() {
+        // 1.删除redis缓存，下次重建快照时从数据库读取
+        stringRedisTemplate.delete(RedisConstants.CACHE_SHOP_TYPE_KEY);
+        // 2.通知所有节点（包括本节点）清除快照
+        invalidate();
+        stringRedisTemplate.convertAndSend(RedisConstants.CACHE_SHOP_TYPE_INVALIDATE_CHANNEL, "");
+    }
 
-        // 5.存在，将数据写入redis
+    private ShopTypeSnapshot buildSnapshot() {
+        String key = RedisConstants.CACHE_SHOP_TYPE_KEY;
         try {
-            stringRedisTemplate.opsForValue().set(key,
-                    // 将传入的对象（value）转换为 JSON 格式的字符串
-                    new ObjectMapper().writeValueAsString(typeList));
+            // 1.从redis中获取数据
+            String shopTypeJson = stringRedisTemplate.opsForValue().get(key);
+            List<ShopType> typeList;
+            if (StrUtil.isNotBlank(shopTypeJson)) {
+                // 2.如果redis中有数据，直接解析
+                typeList = objectMapper.readValue(shopTypeJson,
+                        objectMapper.getTypeFactory().constructCollectionType(List.class, ShopType.class));
+            } else {
+                // 3.如果redis中没有数据，从数据库中获取数据
+                typeList = query().orderByAsc("sort").list();
+                if (typeList == null || typeList.isEmpty()) {
+                    return null;
+                }
+                // 4.将数据写入redis，过期时间增加随机抖动
+                stringRedisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(typeList),
+                        cacheClient.randomTtlMillis(RedisConstants.CACHE_SHOP_TYPE_EXPIRE, TimeUnit.SECONDS),
+                        TimeUnit.MILLISECONDS);
+            }
+            // 5.预先生成完整的响应内容
+            byte[] body = objectMapper.writeValueAsBytes(Result.ok(typeList));
+            ShopTypeSnapshot built = new ShopTypeSnapshot(++version, typeList, body);
+            log.debug("店铺类型快照已重建，版本：{}，ETag：{}", built.getVersion(), built.getEtag());
+            return built;
         } catch (JsonProcessingException e) {
-            e.fillInStackTrace();
-            return Result.fail("存入redis失败");
+            log.error("店铺类型序列化失败", e);
+            return null;
         }
-        // 5.返回数据
-        return Result.ok(typeList);
     }
 }
@@ -1,7 +1,6 @@
 package com.hmdp.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
-import cn.hutool.core.bean.copier.CopyOptions;
 import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.RandomUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
@@ -11,16 +10,18 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.LoginSessionStore;
 import com.hmdp.utils.RedisConstants;
 import com.hmdp.utils.RegexUtils;
+import com.hmdp.utils.SignedTokenService;
 import com.hmdp.utils.SystemConstants;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpSession;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -39,6 +40,16 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private LoginSessionStore loginSessionStore;
+
+    @Resource
+    private SignedTokenService signedTokenService;
+
+    // 登录token的类型：redis为随机token加redis中的登录态，signed为包含用户信息的签名token
+    @Value("${hmdp.login.token-mode:redis}")
+    private String tokenMode;
+
     @Override
     public Result sendCode(String phone, HttpSession session) {
 
@@ -67,37 +78,35 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         if (RegexUtils.isPhoneInvalid(phone)) {
             return Result.fail("手机号格式不正确");
         }
-        // 2.校验验证码
-        Object cacheCode = stringRedisTemplate.opsForValue().get(RedisConstants.LOGIN_CODE_KEY + phone);
-        String code = loginForm.getCode();
-
-        if (cacheCode == null || !cacheCode.toString().equals(code)) {
+        // 2.校验并消费验证码，手机号对应的用户已缓存时同时写入登录态，只需要一次往返
+        boolean signed = "signed".equalsIgnoreCase(tokenMode);
+        String token = signed ? null : UUID.randomUUID().toString(true);
+        LoginSessionStore.CodeLogin codeLogin = loginSessionStore.loginWithCode(phone, loginForm.getCode(), token);
+        if (codeLogin == null) {
             //3.不一致报错
             return Result.fail("验证码错误");
         }
 
-        // 4.一致,根据手机号查询用户信息
-        User user = this.query().eq("phone", phone).one();
+        UserDTO userDTO = codeLogin.getUser();
+        if (userDTO == null) {
+            // 4.用户未缓存，根据手机号查询用户信息
+            User user = this.query().eq("phone", phone).one();
 
-        //5.判断用户是否存在
-        if (user == null) {
-            // 6.不存在则创建用户
-            user = createUserWithPhone(phone);
-        }
-
-        // 6.生成token
-        String token = UUID.randomUUID().toString(true);
-
-        // 7.保存用户信息到redis
-        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
-        Map<String, Object> userMap = BeanUtil.beanToMap(userDTO,new HashMap<>(),
-                CopyOptions.create().setIgnoreNullValue(true).setFieldValueEditor((fieldName,fieldValue)->fieldValue.toString()));
+            //5.判断用户是否存在
+            if (user == null) {
+                // 6.不存在则创建用户
+                user = createUserWithPhone(phone);
+            }
 
-        // 7.保存用户信息到redis
-        stringRedisTemplate.opsForHash().putAll(RedisConstants.LOGIN_USER_KEY + token, userMap);
-        // 设置过期时间
-        stringRedisTemplate.expire(RedisConstants.LOGIN_USER_KEY + token, RedisConstants.LOGIN_USER_TTL, TimeUnit.SECONDS);
+            // 7.保存登录态，同时缓存手机号对应的用户，一次往返写入
+            userDTO = BeanUtil.copyProperties(user, UserDTO.class);
+            loginSessionStore.save(token, userDTO, phone);
+        }
 
+        // 8.签名token包含用户信息，不需要保存到redis
+        if (signed) {
+            return Result.ok(signedTokenService.issue(userDTO));
+        }
         return Result.ok(token);
     }
 
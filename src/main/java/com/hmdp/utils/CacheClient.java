@@ -0,0 +1,590 @@
+package com.hmdp.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 通用的缓存工具，封装缓存空值、互斥锁、逻辑过期三种缓存查询策略
+ * <p>
+ * 缓存值的存储格式由 {@link CacheCodec} 决定，只传入Class的方法使用JSON格式
+ * <p>
+ * 写入缓存时在过期时间上增加随机抖动，避免同时写入的缓存同时过期；开启提前刷新后，
+ * 临近过期的缓存按XFetch算法以一定概率在后台提前重建，越接近过期、重建越慢，提前刷新的概率越大
+ */
+@Component
+public class CacheClient {
+
+    // 缓存空值的标记
+    private static final byte[] NULL_VALUE = new byte[0];
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final RedisLockClient redisLockClient;
+
+    private final CacheRebuildScheduler rebuildScheduler;
+
+    // 合并本节点内同一个key的并发缓存重建
+    private final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+
+    // 按key前缀分别统计redis缓存的命中情况
+    private final Map<String, CacheStats> statsMap = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, CacheCodec<?>> jsonCodecs = new ConcurrentHashMap<>();
+
+    // 过期时间随机增加的最大比例
+    private double ttlJitter = 0.1;
+
+    // 提前刷新的系数，为0时不提前刷新
+    private double earlyRefreshBeta;
+
+    // 热点key逻辑过期的缓存在逻辑过期时间之后再保留的时间，之后由TTL删除
+    private long logicalExpireTtlMarginMillis = TimeUnit.SECONDS.toMillis(60);
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate, RedisLockClient redisLockClient,
+                       CacheRebuildScheduler rebuildScheduler) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisLockClient = redisLockClient;
+        this.rebuildScheduler = rebuildScheduler;
+    }
+
+    @Value("${hmdp.cache.ttl-jitter:0.1}")
+    public void setTtlJitter(double ttlJitter) {
+        this.ttlJitter = ttlJitter;
+    }
+
+    @Value("${hmdp.cache.early-refresh-beta:0}")
+    public void setEarlyRefreshBeta(double earlyRefreshBeta) {
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
+    @Value("${hmdp.cache.logical-expire-ttl-margin-seconds:60}")
+    public void setLogicalExpireTtlMarginSeconds(long seconds) {
+        this.logicalExpireTtlMarginMillis = TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    // 在过期时间上增加随机抖动，返回毫秒数
+    public long randomTtlMillis(long time, TimeUnit unit) {
+        long millis = unit.toMillis(time);
+        return millis + (long) (millis * ttlJitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+    public CacheStats stats(String keyPrefix) {
+        return statsMap.computeIfAbsent(keyPrefix, k -> new CacheStats());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> CacheCodec<R> jsonCodec(Class<R> type) {
+        return (CacheCodec<R>) jsonCodecs.computeIfAbsent(type, JsonCacheCodec::new);
+    }
+
+    // 写入缓存并设置TTL
+    @SuppressWarnings("unchecked")
+    public void set(String key, Object value, Long time, TimeUnit unit) {
+        set(key, value, (CacheCodec<Object>) jsonCodec(value.getClass()), time, unit);
+    }
+
+    public <R> void set(String key, R value, CacheCodec<R> codec, Long time, TimeUnit unit) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = codec.encode(value);
+        long ttl = randomTtlMillis(time, unit);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.pSetEx(rawKey, ttl, rawValue));
+    }
+
+    // 写入缓存并设置逻辑过期时间，不设置TTL
+    @SuppressWarnings("unchecked")
+    public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
+        setWithLogicalExpire(key, value, (CacheCodec<Object>) jsonCodec(value.getClass()), time, unit);
+    }
+
+    public <R> void setWithLogicalExpire(String key, R value, CacheCodec<R> codec, Long time, TimeUnit unit) {
+        setWithLogicalExpire(key, value, codec, time, unit, false);
+    }
+
+    /**
+     * 写入逻辑过期的缓存
+     * @param ttlBackstop 是否同时设置TTL为逻辑过期时间加上保留时间，不再被访问和重建的缓存最终由TTL删除
+     */
+    private <R> void setWithLogicalExpire(String key, R value, CacheCodec<R> codec, Long time, TimeUnit unit,
+                                          boolean ttlBackstop) {
+        byte[] rawKey = rawKey(key);
+        long millis = randomTtlMillis(time, unit);
+        byte[] rawValue = codec.encodeWithLogicalExpire(value, LocalDateTime.now().plus(millis, ChronoUnit.MILLIS));
+        if (ttlBackstop) {
+            long ttl = millis + logicalExpireTtlMarginMillis;
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.pSetEx(rawKey, ttl, rawValue));
+            return;
+        }
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.set(rawKey, rawValue));
+    }
+
+    // 使用管道批量写入缓存并设置TTL
+    public <R> void setBatch(Map<String, R> values, CacheCodec<R> codec, Long time, TimeUnit unit) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) -> connection.pSetEx(rawKey(key), randomTtlMillis(time, unit), codec.encode(value)));
+            return null;
+        });
+    }
+
+    // 使用管道批量写入缓存并设置逻辑过期时间
+    public <R> void setBatchWithLogicalExpire(Map<String, R> values, CacheCodec<R> codec, Long time, TimeUnit unit) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) ->
+                    connection.set(rawKey(key), codec.encodeWithLogicalExpire(value, logicalExpireTime(time, unit))));
+            return null;
+        });
+    }
+
+    // 按指定策略查询缓存
+    public <R, ID> R query(CacheStrategy strategy, String keyPrefix, ID id, Class<R> type,
+                           Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return query(strategy, keyPrefix, id, jsonCodec(type), dbFallback, time, unit);
+    }
+
+    public <R, ID> R query(CacheStrategy strategy, String keyPrefix, ID id, CacheCodec<R> codec,
+                           Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        switch (strategy) {
+            case MUTEX:
+                return queryWithMutex(keyPrefix, id, codec, dbFallback, time, unit);
+            case LOGICAL_EXPIRE:
+                return queryWithLogicalExpire(keyPrefix, id, codec, dbFallback, time, unit);
+            default:
+                return queryWithPassThrough(keyPrefix, id, codec, dbFallback, time, unit);
+        }
+    }
+
+    // 缓存空值解决缓存穿透
+    public <R, ID> R queryWithPassThrough(String keyPrefix, ID id, Class<R> type,
+                                          Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithPassThrough(keyPrefix, id, jsonCodec(type), dbFallback, time, unit);
+    }
+
+    public <R, ID> R queryWithPassThrough(String keyPrefix, ID id, CacheCodec<R> codec,
+                                          Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        CacheStats stats = stats(keyPrefix);
+        // 1.从redis中获取数据，临近过期时按概率在后台提前刷新
+        byte[] bytes = getWithEarlyRefresh(keyPrefix, id, codec, dbFallback, time, unit);
+        // 2.命中直接返回，空值返回null
+        if (bytes != null) {
+            stats.recordRedisHit();
+            return decode(bytes, codec);
+        }
+        stats.recordRedisMiss();
+        // 3.如果redis中没有数据，从数据库中获取数据，本节点内同一个key只查询一次
+        return singleFlight(key, () -> loadAndSet(keyPrefix, id, codec, dbFallback, time, unit));
+    }
+
+    /**
+     * 批量查询缓存，一次MGET读取所有key，未命中的id一次性查询数据库，再用管道写回缓存，不存在的id写入空值
+     * <p>
+     * 命中逻辑过期的数据时与逻辑过期策略相同，返回旧数据并在后台重建；写回的格式与单个查询的策略一致
+     *
+     * @param dbFallback 按id集合查询数据库，只需返回存在的数据
+     * @param idGetter   从查询结果中取出id，用于和请求的id对应
+     * @return 与ids顺序一致的结果，不存在的id对应null
+     */
+    public <R, ID> List<R> queryBatch(CacheStrategy strategy, String keyPrefix, List<ID> ids, CacheCodec<R> codec,
+                                      Function<Collection<ID>, List<R>> dbFallback, Function<R, ID> idGetter,
+                                      Long time, TimeUnit unit) {
+        boolean logicalExpire = strategy == CacheStrategy.LOGICAL_EXPIRE;
+        List<R> result = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return result;
+        }
+        CacheStats stats = stats(keyPrefix);
+        // 1.一次MGET从redis中获取所有数据
+        byte[][] rawKeys = new byte[ids.size()][];
+        for (int i = 0; i < ids.size(); i++) {
+            rawKeys[i] = rawKey(keyPrefix + ids.get(i));
+        }
+        List<byte[]> values = stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(rawKeys));
+        // 2.命中的直接解码，空值为null，逻辑过期的在后台重建，记录未命中的id
+        Map<ID, Integer> missIndexes = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            byte[] bytes = values == null ? null : values.get(i);
+            if (bytes != null) {
+                stats.recordRedisHit();
+                if (bytes.length == 0) {
+                    result.add(null);
+                    continue;
+                }
+                RedisData<R> redisData = codec.decode(bytes);
+                result.add(redisData.getData());
+                if (isExpired(redisData.getExpireTime())) {
+                    // 其它策略下逻辑过期的数据只来自热点晋升，重建后保留TTL兜底
+                    ID id = ids.get(i);
+                    rebuildExpired(keyPrefix, id, codec, () -> loadOne(id, dbFallback, idGetter),
+                            time, unit, !logicalExpire);
+                }
+                continue;
+            }
+            stats.recordRedisMiss();
+            result.add(null);
+            missIndexes.putIfAbsent(ids.get(i), i);
+        }
+        if (missIndexes.isEmpty()) {
+            return result;
+        }
+        // 3.未命中的id一次性查询数据库
+        long begin = System.nanoTime();
+        List<R> loaded = dbFallback.apply(missIndexes.keySet());
+        stats.recordLoad(System.nanoTime() - begin);
+        Map<ID, R> loadedMap = new HashMap<>(loaded.size() * 2);
+        for (R r : loaded) {
+            loadedMap.put(idGetter.apply(r), r);
+        }
+        // 4.用管道写回redis，逻辑过期策略写入逻辑过期的数据，数据库中不存在的id写入空值
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            missIndexes.keySet().forEach(id -> {
+                R r = loadedMap.get(id);
+                byte[] rawKey = rawKey(keyPrefix + id);
+                if (r == null) {
+                    connection.pSetEx(rawKey, randomTtlMillis(CACHE_NULL_TTL, TimeUnit.MINUTES), NULL_VALUE);
+                } else if (logicalExpire) {
+                    connection.set(rawKey, codec.encodeWithLogicalExpire(r, logicalExpireTime(time, unit)));
+                } else {
+                    connection.pSetEx(rawKey, randomTtlMillis(time, unit), codec.encode(r));
+                }
+            });
+            return null;
+        });
+        // 5.按请求顺序填充结果，重复的id取同一个对象
+        for (int i = 0; i < ids.size(); i++) {
+            if (result.get(i) == null && missIndexes.containsKey(ids.get(i))) {
+                result.set(i, loadedMap.get(ids.get(i)));
+            }
+        }
+        return result;
+    }
+
+    // 互斥锁解决缓存击穿
+    public <R, ID> R queryWithMutex(String keyPrefix, ID id, Class<R> type,
+                                    Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithMutex(keyPrefix, id, jsonCodec(type), dbFallback, time, unit);
+    }
+
+    public <R, ID> R queryWithMutex(String keyPrefix, ID id, CacheCodec<R> codec,
+                                    Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        CacheStats stats = stats(keyPrefix);
+        // 1.从redis中获取数据，临近过期时按概率在后台提前刷新
+        byte[] bytes = getWithEarlyRefresh(keyPrefix, id, codec, dbFallback, time, unit);
+        // 2.命中直接返回，空值返回null
+        if (bytes != null) {
+            stats.recordRedisHit();
+            return decode(bytes, codec);
+        }
+        stats.recordRedisMiss();
+        // 3.未命中，本节点内同一个key的并发请求共享一次重建，互斥锁只在节点之间竞争
+        return singleFlight(key, () -> rebuildWithMutex(keyPrefix, id, codec, dbFallback, time, unit));
+    }
+
+    private <R, ID> R rebuildWithMutex(String keyPrefix, ID id, CacheCodec<R> codec,
+                                       Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        ILock lock = redisLockClient.getLock(key, false);
+        String lockKey = LOCK_KEY_PREFIX + key;
+        LockNotifier lockNotifier = redisLockClient.lockNotifier();
+        long deadline = System.currentTimeMillis() + CACHE_LOCK_WAIT_BUDGET_MILLIS;
+        while (true) {
+            // 1.先登记等待，再尝试获取锁，避免错过释放通知
+            CompletableFuture<Void> released = lockNotifier.register(lockKey);
+            if (lock.tryLock()) {
+                lockNotifier.cancel(lockKey, released);
+                try {
+                    // 2.获取锁成功，再次检查缓存，其它节点可能已经完成重建
+                    byte[] bytes = get(key);
+                    if (bytes != null) {
+                        return decode(bytes, codec);
+                    }
+                    // 3.从数据库中获取数据并写入缓存
+                    return loadAndSet(keyPrefix, id, codec, dbFallback, time, unit);
+                } finally {
+                    // 4.释放锁，释放脚本会通知等待的节点
+                    lock.unlock();
+                }
+            }
+            // 5.其它节点正在重建，等待锁释放通知后重新查询缓存
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining > 0) {
+                lockNotifier.await(lockKey, released, Math.min(remaining, CACHE_LOCK_WAIT_MILLIS));
+                byte[] bytes = get(key);
+                if (bytes != null) {
+                    return decode(bytes, codec);
+                }
+                continue;
+            }
+            // 6.超过等待总时长，持有锁的节点可能卡住，直接查询数据库返回，不写缓存，避免覆盖持有者的重建结果
+            lockNotifier.cancel(lockKey, released);
+            long begin = System.nanoTime();
+            R r = dbFallback.apply(id);
+            stats(keyPrefix).recordLoad(System.nanoTime() - begin);
+            return r;
+        }
+    }
+
+    // 逻辑过期解决缓存击穿
+    public <R, ID> R queryWithLogicalExpire(String keyPrefix, ID id, Class<R> type,
+                                            Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithLogicalExpire(keyPrefix, id, jsonCodec(type), dbFallback, time, unit);
+    }
+
+    public <R, ID> R queryWithLogicalExpire(String keyPrefix, ID id, CacheCodec<R> codec,
+                                            Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        CacheStats stats = stats(keyPrefix);
+        // 1.从redis中获取数据
+        byte[] bytes = get(key);
+        // 2.如果redis中没有数据，直接返回null
+        if (bytes == null || bytes.length == 0) {
+            stats.recordRedisMiss();
+            return null;
+        }
+        stats.recordRedisHit();
+        return rebuildIfLogicalExpired(keyPrefix, id, bytes, codec, dbFallback, time, unit, false);
+    }
+
+    /**
+     * 查询热点key，命中时与逻辑过期相同，过期后在后台重建；未命中时本节点内合并为一次数据库查询。
+     * 写入的缓存都设置了TTL兜底，取消热点后即使没有改回TTL控制过期，缓存也不会永久保留
+     */
+    public <R, ID> R queryHot(String keyPrefix, ID id, CacheCodec<R> codec,
+                              Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        CacheStats stats = stats(keyPrefix);
+        // 1.从redis中获取数据
+        byte[] bytes = get(key);
+        // 2.命中空值返回null，命中数据按逻辑过期处理
+        if (bytes != null) {
+            stats.recordRedisHit();
+            return bytes.length == 0 ? null
+                    : rebuildIfLogicalExpired(keyPrefix, id, bytes, codec, dbFallback, time, unit, true);
+        }
+        stats.recordRedisMiss();
+        // 3.未命中，查询数据库后写入逻辑过期的数据，不存在时写入空值
+        return singleFlight(key, () -> {
+            long begin = System.nanoTime();
+            R r = dbFallback.apply(id);
+            stats.recordLoad(System.nanoTime() - begin);
+            if (r == null) {
+                setNull(key);
+                return null;
+            }
+            setWithLogicalExpire(key, r, codec, time, unit, true);
+            return r;
+        });
+    }
+
+    private <R, ID> R rebuildIfLogicalExpired(String keyPrefix, ID id, byte[] bytes, CacheCodec<R> codec,
+                                              Function<ID, R> dbFallback, Long time, TimeUnit unit, boolean ttlBackstop) {
+        // 3.命中，解码出数据和逻辑过期时间
+        RedisData<R> redisData = codec.decode(bytes);
+        R r = redisData.getData();
+        LocalDateTime expireTime = redisData.getExpireTime();
+        // 4.判断是否过期，未过期直接返回，没有逻辑过期时间的数据由TTL控制过期
+        if (!isExpired(expireTime)) {
+            return r;
+        }
+        // 5.已过期，在后台重建，返回过期的数据
+        rebuildExpired(keyPrefix, id, codec, () -> dbFallback.apply(id), time, unit, ttlBackstop);
+        return r;
+    }
+
+    // 逻辑过期的数据在后台重建，多个节点同时触发时只有获取到锁的节点执行
+    private <R, ID> void rebuildExpired(String keyPrefix, ID id, CacheCodec<R> codec, Supplier<R> loader,
+                                        Long time, TimeUnit unit, boolean ttlBackstop) {
+        String key = keyPrefix + id;
+        CacheStats stats = stats(keyPrefix);
+        // 1.获取互斥锁
+        ILock lock = redisLockClient.getLock(key, false);
+        if (!lock.tryLock()) {
+            return;
+        }
+        // 2.获取锁成功，再次检查缓存是否过期，其它线程可能刚完成重建并释放锁
+        byte[] latest = get(key);
+        if (latest != null && latest.length > 0 && !isExpired(codec.decode(latest).getExpireTime())) {
+            lock.unlock();
+            return;
+        }
+        // 3.提交到重建线程池，任务被丢弃时释放锁，由后续请求再次触发
+        submitRebuild(key, lock, () -> {
+            long begin = System.nanoTime();
+            R r = loader.get();
+            stats.recordLoad(System.nanoTime() - begin);
+            // 数据已被删除时写入空值，不能把null编码进逻辑过期的数据
+            if (r == null) {
+                setNull(key);
+                return;
+            }
+            setWithLogicalExpire(key, r, codec, time, unit, ttlBackstop);
+        });
+    }
+
+    // 用批量查询的数据库回调查询单个id
+    private static <R, ID> R loadOne(ID id, Function<Collection<ID>, List<R>> dbFallback, Function<R, ID> idGetter) {
+        for (R r : dbFallback.apply(Collections.singletonList(id))) {
+            if (id.equals(idGetter.apply(r))) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在后台查询数据库并写入逻辑过期的缓存，用于热点key的晋升，TTL为逻辑过期时间加上保留时间
+     * 多个节点同时触发时只有获取到锁的节点执行
+     */
+    public <R, ID> void rebuildWithLogicalExpireAsync(String keyPrefix, ID id, CacheCodec<R> codec,
+                                                      Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        ILock lock = redisLockClient.getLock(key, false);
+        if (!lock.tryLock()) {
+            return;
+        }
+        CacheStats stats = stats(keyPrefix);
+        submitRebuild(key, lock, () -> {
+            long begin = System.nanoTime();
+            R r = dbFallback.apply(id);
+            stats.recordLoad(System.nanoTime() - begin);
+            if (r == null) {
+                setNull(key);
+                return;
+            }
+            setWithLogicalExpire(key, r, codec, time, unit, true);
+        });
+    }
+
+    /**
+     * 为缓存设置带随机抖动的TTL，逻辑过期的缓存转为由TTL控制过期，用于热点key的降级
+     */
+    public void expire(String key, Long time, TimeUnit unit) {
+        stringRedisTemplate.expire(key, randomTtlMillis(time, unit), TimeUnit.MILLISECONDS);
+    }
+
+    // 查询数据库并写入缓存，数据不存在时写入空值
+    private <R, ID> R loadAndSet(String keyPrefix, ID id, CacheCodec<R> codec,
+                                 Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        long begin = System.nanoTime();
+        R r = dbFallback.apply(id);
+        stats(keyPrefix).recordLoad(System.nanoTime() - begin);
+        if (r == null) {
+            setNull(key);
+            return null;
+        }
+        set(key, r, codec, time, unit);
+        return r;
+    }
+
+    /**
+     * 读取缓存，开启提前刷新时同时读取剩余过期时间，
+     * 满足 重建耗时 * beta * -ln(random) >= 剩余过期时间 时在后台提前重建缓存
+     */
+    private <R, ID> byte[] getWithEarlyRefresh(String keyPrefix, ID id, CacheCodec<R> codec,
+                                               Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        if (earlyRefreshBeta <= 0) {
+            return get(key);
+        }
+        byte[] rawKey = rawKey(key);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.get(rawKey);
+            connection.pTtl(rawKey);
+            return null;
+        }, null);
+        byte[] bytes = (byte[]) results.get(0);
+        Long pttl = (Long) results.get(1);
+        if (bytes == null || bytes.length == 0 || pttl == null || pttl <= 0) {
+            return bytes;
+        }
+        CacheStats stats = stats(keyPrefix);
+        double deltaMillis = stats.loadNanos() / 1_000_000D;
+        double gap = deltaMillis * earlyRefreshBeta * -Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        if (gap >= pttl) {
+            refreshInBackground(keyPrefix, id, codec, dbFallback, time, unit, stats);
+        }
+        return bytes;
+    }
+
+    private <R, ID> void refreshInBackground(String keyPrefix, ID id, CacheCodec<R> codec, Function<ID, R> dbFallback,
+                                             Long time, TimeUnit unit, CacheStats stats) {
+        String key = keyPrefix + id;
+        // 多个节点同时命中时只有获取到锁的节点提前刷新
+        ILock lock = redisLockClient.getLock(key, false);
+        if (!lock.tryLock()) {
+            return;
+        }
+        stats.recordEarlyRefresh();
+        submitRebuild(key, lock, () -> loadAndSet(keyPrefix, id, codec, dbFallback, time, unit));
+    }
+
+    // 提交重建任务，任务结束后在重建线程中释放锁；任务被去重或拒绝时直接释放锁
+    // 锁的持有者标识包含发起请求的线程id，请求线程被复用后不能重入仍在重建中的锁，因此重建锁都是不可重入的
+    private void submitRebuild(String key, ILock lock, Runnable rebuild) {
+        boolean accepted = rebuildScheduler.submit(key, () -> {
+            try {
+                rebuild.run();
+            } finally {
+                lock.unlock();
+            }
+        });
+        if (!accepted) {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isExpired(LocalDateTime expireTime) {
+        return expireTime != null && !expireTime.isAfter(LocalDateTime.now());
+    }
+
+    // 逻辑过期时间同样增加随机抖动
+    private LocalDateTime logicalExpireTime(Long time, TimeUnit unit) {
+        return LocalDateTime.now().plus(randomTtlMillis(time, unit), ChronoUnit.MILLIS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> R singleFlight(String key, Supplier<R> loader) {
+        return (R) singleFlight.execute(key, loader::get);
+    }
+
+    // 写入带随机抖动TTL的空值
+    private void setNull(String key) {
+        byte[] rawKey = rawKey(key);
+        long ttl = randomTtlMillis(CACHE_NULL_TTL, TimeUnit.MINUTES);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.pSetEx(rawKey, ttl, NULL_VALUE));
+    }
+
+        private byte[] get(String key) {
+        byte[] rawKey = rawKey(key);
+        return stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+    }
+
+    // 空值标记返回null
+    private static <R> R decode(byte[] bytes, CacheCodec<R> codec) {
+        return bytes.length == 0 ? null : codec.decode(bytes).getData();
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,24 @@
+package com.hmdp.utils;
+
+import java.time.LocalDateTime;
+
+/**
+ * 缓存值的编解码器，决定对象在redis中的存储格式
+ */
+public interface CacheCodec<T> {
+
+    /**
+     * 编码普通缓存值
+     */
+    byte[] encode(T value);
+
+    /**
+     * 编码带逻辑过期时间的缓存值
+     */
+    byte[] encodeWithLogicalExpire(T value, LocalDateTime expireTime);
+
+    /**
+     * 解码缓存值，普通缓存值的expireTime为null
+     */
+    RedisData<T> decode(byte[] bytes);
+}
@@ -0,0 +1,153 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存重建任务的调度器
+ * <p>
+ * 使用有界队列的线程池执行重建任务，同一个key同时只会有一个排队或执行中的任务。
+ * 队列满时按拒绝策略处理：DISCARD 丢弃任务，调用方继续返回旧数据；CALLER_RUNS 由调用线程执行，对请求方形成背压。
+ * 记录队列深度、排队与执行耗时、失败与拒绝次数，用于评估线程数和队列容量。
+ */
+@Slf4j
+@Component
+public class CacheRebuildScheduler {
+
+    public enum RejectPolicy {
+        DISCARD, CALLER_RUNS
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final RejectPolicy rejectPolicy;
+    private final long shutdownTimeoutSeconds;
+
+    // 排队或执行中的任务对应的key
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder rebuildNanos = new LongAdder();
+    private final LongAccumulator maxRebuildNanos = new LongAccumulator(Long::max, 0);
+
+    public CacheRebuildScheduler(@Value("${hmdp.cache.rebuild.threads:10}") int threads,
+                                 @Value("${hmdp.cache.rebuild.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${hmdp.cache.rebuild.reject-policy:DISCARD}") RejectPolicy rejectPolicy,
+                                 @Value("${hmdp.cache.rebuild.shutdown-timeout-seconds:10}") long shutdownTimeoutSeconds) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "cache-rebuild-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.rejectPolicy = rejectPolicy;
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+    }
+
+    /**
+     * 提交重建任务
+     * @param key 缓存key，同一个key已有排队或执行中的任务时不再提交
+     * @return 任务被接受（包括由调用线程执行）时返回true，被去重或拒绝时返回false
+     */
+    public boolean submit(String key, Runnable task) {
+        if (!pendingKeys.add(key)) {
+            deduplicated.increment();
+            return false;
+        }
+        long enqueueTime = System.nanoTime();
+        Runnable wrapped = () -> run(key, task, enqueueTime);
+        try {
+            executor.execute(wrapped);
+            submitted.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (rejectPolicy == RejectPolicy.CALLER_RUNS && !executor.isShutdown()) {
+                // 队列已满，由调用线程执行，降低请求方的提交速度
+                submitted.increment();
+                callerRuns.increment();
+                wrapped.run();
+                return true;
+            }
+            pendingKeys.remove(key);
+            rejected.increment();
+            log.warn("缓存重建队列已满，丢弃重建任务，key：{}", key);
+            return false;
+        }
+    }
+
+    private void run(String key, Runnable task, long enqueueTime) {
+        long begin = System.nanoTime();
+        waitNanos.add(begin - enqueueTime);
+        try {
+            task.run();
+            completed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log.error("缓存重建失败，key：{}", key, e);
+        } finally {
+            long cost = System.nanoTime() - begin;
+            rebuildNanos.add(cost);
+            maxRebuildNanos.accumulate(cost);
+            pendingKeys.remove(key);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long finished = completed.sum() + failed.sum();
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("queueRemaining", executor.getQueue().remainingCapacity());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("pendingKeys", pendingKeys.size());
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("deduplicated", deduplicated.sum());
+        stats.put("callerRuns", callerRuns.sum());
+        stats.put("avgWaitMillis", finished == 0 ? 0D : waitNanos.sum() / 1_000_000D / finished);
+        stats.put("avgRebuildMillis", finished == 0 ? 0D : rebuildNanos.sum() / 1_000_000D / finished);
+        stats.put("maxRebuildMillis", maxRebuildNanos.get() / 1_000_000D);
+        return stats;
+    }
+
+    /**
+     * 停止接收新任务，等待已提交的任务执行完成，超时后中断剩余任务
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                List<Runnable> dropped = executor.shutdownNow();
+                log.warn("缓存重建线程池关闭超时，放弃{}个未执行的任务", dropped.size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
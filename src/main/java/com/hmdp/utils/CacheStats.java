@@ -0,0 +1,72 @@
+package com.hmdp.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多级缓存的命中统计，按缓存层级分别记录命中与未命中次数
+ */
+public class CacheStats {
+
+    private final LongAdder localHit = new LongAdder();
+    private final LongAdder localMiss = new LongAdder();
+    private final LongAdder redisHit = new LongAdder();
+    private final LongAdder redisMiss = new LongAdder();
+    private final LongAdder bloomRejected = new LongAdder();
+    private final LongAdder earlyRefresh = new LongAdder();
+    // 查询数据库重建缓存耗时的指数加权平均值，提前刷新时用来估算重建需要的时间
+    private volatile long loadNanos;
+
+    public void recordLocalHit() {
+        localHit.increment();
+    }
+
+    public void recordLocalMiss() {
+        localMiss.increment();
+    }
+
+    public void recordRedisHit() {
+        redisHit.increment();
+    }
+
+    public void recordRedisMiss() {
+        redisMiss.increment();
+    }
+
+    public void recordBloomRejected() {
+        bloomRejected.increment();
+    }
+
+    public void recordEarlyRefresh() {
+        earlyRefresh.increment();
+    }
+
+    public void recordLoad(long nanos) {
+        long current = loadNanos;
+        loadNanos = current == 0 ? nanos : current + (nanos - current) / 8;
+    }
+
+    public long loadNanos() {
+        return loadNanos;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localHit", localHit.sum());
+        stats.put("localMiss", localMiss.sum());
+        stats.put("localHitRate", hitRate(localHit.sum(), localMiss.sum()));
+        stats.put("redisHit", redisHit.sum());
+        stats.put("redisMiss", redisMiss.sum());
+        stats.put("redisHitRate", hitRate(redisHit.sum(), redisMiss.sum()));
+        stats.put("bloomRejected", bloomRejected.sum());
+        stats.put("earlyRefresh", earlyRefresh.sum());
+        stats.put("loadMillis", loadNanos / 1_000_000D);
+        return stats;
+    }
+
+    private static double hitRate(long hit, long miss) {
+        long total = hit + miss;
+        return total == 0 ? 0D : (double) hit / total;
+    }
+}
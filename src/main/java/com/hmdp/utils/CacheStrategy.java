@@ -0,0 +1,19 @@
+package com.hmdp.utils;
+
+/**
+ * 缓存查询策略
+ */
+public enum CacheStrategy {
+    /**
+     * 缓存空值解决缓存穿透
+     */
+    PASS_THROUGH,
+    /**
+     * 互斥锁解决缓存击穿
+     */
+    MUTEX,
+    /**
+     * 逻辑过期解决缓存击穿，需要提前预热缓存
+     */
+    LOGICAL_EXPIRE
+}
@@ -0,0 +1,61 @@
+package com.hmdp.utils;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+
+import static com.hmdp.utils.RedisConstants.CACHE_VERSION_KEY;
+
+/**
+ * 数据版本号，用于生成HTTP响应的ETag
+ * <p>
+ * 数据变更时版本号加1。版本号不存在时（首次访问或被淘汰）以当前时间初始化，
+ * 保证重新初始化后的版本号不会与之前发出的ETag相同。
+ */
+@Component
+public class CacheVersionClient {
+
+    static final DefaultRedisScript<Long> BUMP_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        BUMP_SCRIPT.setLocation(new ClassPathResource("lua/version_bump.lua"));
+        BUMP_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public CacheVersionClient(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 查询当前版本号，不存在时初始化
+     */
+    public long version(String name) {
+        String key = CACHE_VERSION_KEY + name;
+        String version = stringRedisTemplate.opsForValue().get(key);
+        if (version == null) {
+            stringRedisTemplate.opsForValue().setIfAbsent(key, String.valueOf(System.currentTimeMillis()));
+            version = stringRedisTemplate.opsForValue().get(key);
+        }
+        return Long.parseLong(version);
+    }
+
+    /**
+     * 数据变更后增加版本号，之前发出的ETag全部失效
+     */
+    public void bump(String name) {
+        stringRedisTemplate.execute(BUMP_SCRIPT, Collections.singletonList(CACHE_VERSION_KEY + name),
+                String.valueOf(System.currentTimeMillis()));
+    }
+
+    /**
+     * 由名称和版本号生成的强校验ETag，带双引号
+     */
+    public static String etag(String name, long version) {
+        return "\"" + name.replace(':', '-') + "-" + version + "\"";
+    }
+}
@@ -0,0 +1,175 @@
+package com.hmdp.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * 基于滑动窗口Count-Min Sketch的热点key探测器
+ * <p>
+ * 时间窗口被划分为多个时间片，每个时间片一个Count-Min Sketch，访问计入当前时间片，
+ * 估算访问次数时累加窗口内所有时间片的估算值，过期的时间片在轮转时清空。
+ * 窗口内访问次数达到晋升阈值的key成为热点；降级时使用更低的阈值，避免在阈值附近反复切换。
+ */
+public class HotKeyDetector {
+
+    private final int slots;
+    private final long slotMillis;
+    private final int width;
+    private final int depth;
+    private final int promoteThreshold;
+    private final int demoteThreshold;
+    private final int maxHotKeys;
+
+    private final AtomicIntegerArray[] sketches;
+    // 每个时间片当前对应的时间片序号，用于判断时间片是否过期
+    private final AtomicLongArray slotEpochs;
+
+    // 当前的热点key及其晋升时间
+    private final Map<Long, Long> hotKeys = new ConcurrentHashMap<>();
+
+    /**
+     * @param windowMillis     滑动窗口的长度
+     * @param slots            窗口划分的时间片数量
+     * @param width            每行计数器的数量，越大误差越小
+     * @param depth            哈希函数的数量
+     * @param promoteThreshold 窗口内访问次数达到该值时晋升为热点
+     * @param demoteThreshold  窗口内访问次数低于该值时取消热点
+     * @param maxHotKeys       热点key的最大数量
+     */
+    public HotKeyDetector(long windowMillis, int slots, int width, int depth,
+                          int promoteThreshold, int demoteThreshold, int maxHotKeys) {
+        this.slots = slots;
+        this.slotMillis = Math.max(1, windowMillis / slots);
+        this.width = width;
+        this.depth = depth;
+        this.promoteThreshold = promoteThreshold;
+        this.demoteThreshold = demoteThreshold;
+        this.maxHotKeys = maxHotKeys;
+        this.sketches = new AtomicIntegerArray[slots];
+        this.slotEpochs = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sketches[i] = new AtomicIntegerArray(width * depth);
+        }
+    }
+
+    /**
+     * 记录一次访问
+     * @return 本次访问使key新晋升为热点时返回true
+     */
+    public boolean record(long key) {
+        return record(key, System.currentTimeMillis());
+    }
+
+    boolean record(long key, long now) {
+        AtomicIntegerArray sketch = slot(now);
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < depth; i++) {
+            sketch.incrementAndGet(i * width + index(h1, h2, i));
+        }
+        if (hotKeys.containsKey(key) || hotKeys.size() >= maxHotKeys) {
+            return false;
+        }
+        if (estimate(key, now) >= promoteThreshold) {
+            return hotKeys.putIfAbsent(key, now) == null;
+        }
+        return false;
+    }
+
+    public boolean isHot(long key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 估算key在窗口内的访问次数
+     */
+    public int estimate(long key) {
+        return estimate(key, System.currentTimeMillis());
+    }
+
+    int estimate(long key, long now) {
+        long epoch = now / slotMillis;
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int total = 0;
+        for (int s = 0; s < slots; s++) {
+            // 跳过窗口之外尚未被轮转清空的时间片
+            if (epoch - slotEpochs.get(s) >= slots) {
+                continue;
+            }
+            AtomicIntegerArray sketch = sketches[s];
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < depth; i++) {
+                min = Math.min(min, sketch.get(i * width + index(h1, h2, i)));
+            }
+            total += min;
+        }
+        return total;
+    }
+
+    /**
+     * 取消访问量回落的热点
+     * @return 被取消的热点key
+     */
+    public List<Long> demote() {
+        return demote(System.currentTimeMillis());
+    }
+
+    List<Long> demote(long now) {
+        List<Long> demoted = new ArrayList<>();
+        for (Long key : hotKeys.keySet()) {
+            if (estimate(key, now) < demoteThreshold && hotKeys.remove(key) != null) {
+                demoted.add(key);
+            }
+        }
+        return demoted;
+    }
+
+    /**
+     * 当前的热点key及其窗口内的估算访问次数，按访问次数倒序
+     */
+    public Map<Long, Integer> hotKeys() {
+        long now = System.currentTimeMillis();
+        return hotKeys.keySet().stream()
+                .collect(Collectors.toMap(key -> key, key -> estimate(key, now)))
+                .entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    // 返回当前时间片，时间片过期时先清空
+    private AtomicIntegerArray slot(long now) {
+        long epoch = now / slotMillis;
+        int s = (int) (epoch % slots);
+        if (slotEpochs.get(s) != epoch) {
+            synchronized (this) {
+                if (slotEpochs.get(s) != epoch) {
+                    AtomicIntegerArray sketch = sketches[s];
+                    for (int i = 0; i < sketch.length(); i++) {
+                        sketch.set(i, 0);
+                    }
+                    slotEpochs.set(s, epoch);
+                }
+            }
+        }
+        return sketches[s];
+    }
+
+    private int index(int h1, int h2, int i) {
+        return ((h1 + i * h2) & Integer.MAX_VALUE) % width;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+}
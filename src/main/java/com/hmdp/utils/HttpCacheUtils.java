@@ -0,0 +1,30 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * HTTP条件请求的工具方法
+ */
+public class HttpCacheUtils {
+
+    /**
+     * 判断请求头If-None-Match是否包含当前的ETag，包含时可以直接返回304
+     * @param ifNoneMatch 请求头的值，可以是逗号分隔的多个ETag，弱校验的ETag带W/前缀
+     * @param etag 当前的ETag，带双引号
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (StrUtil.isBlank(ifNoneMatch) || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || etag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁
+ */
+public interface ILock {
+
+    /**
+     * 尝试获取锁，不等待，锁的租期由看门狗自动续期，直到释放锁
+     * @return true:获取成功，false:获取失败
+     */
+    boolean tryLock();
+
+    /**
+     * 尝试获取锁，锁被占用时等待锁释放通知，锁的租期由看门狗自动续期
+     * @param waitTime 最长等待时间
+     * @return true:获取成功，false:等待超时
+     */
+    boolean tryLock(long waitTime, TimeUnit unit);
+
+    /**
+     * 尝试获取锁，锁被占用时等待锁释放通知，锁在租期到达后自动释放，不续期
+     * @param waitTime 最长等待时间
+     * @param leaseTime 锁的租期
+     * @return true:获取成功，false:等待超时
+     */
+    boolean tryLock(long waitTime, long leaseTime, TimeUnit unit);
+
+    /**
+     * 释放锁，可重入锁需要释放与获取相同的次数
+     */
+    void unlock();
+}
@@ -0,0 +1,185 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import static com.hmdp.utils.RedisConstants.BLOOM_ADDED_KEY;
+import static com.hmdp.utils.RedisConstants.BLOOM_ADD_CHANNEL;
+
+/**
+ * 按业务名称管理的id布隆过滤器，用于在查询redis和数据库之前拦截不存在的id
+ * <p>
+ * 过滤器在启动后从数据库全量构建，并定期重建；新增的id通过redis频道同步到所有节点，
+ * 同时记入redis的有序集合，本地判断不存在时再查询该集合，错过频道消息的节点也不会误判新增的id不存在。
+ * 有序集合的分数为新增时间，超过两个重建间隔的记录已经包含在所有节点重建的过滤器中，重建时清理。
+ * 过滤器构建完成之前不做拦截。
+ */
+@Slf4j
+@Component
+public class IdBloomFilter {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${hmdp.bloom.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${hmdp.bloom.fpp:0.01}")
+    private double fpp;
+
+    @Value("${hmdp.bloom.rebuild-interval-millis:3600000}")
+    private long rebuildIntervalMillis;
+
+    private final Map<String, Holder> holders = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void subscribe() {
+        // 其它节点新增的id，格式为 名称:id
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int index = body.lastIndexOf(':');
+            Holder holder = holders.get(body.substring(0, index));
+            if (holder != null) {
+                holder.put(Long.parseLong(body.substring(index + 1)));
+            }
+        }, new ChannelTopic(BLOOM_ADD_CHANNEL));
+    }
+
+    /**
+     * 注册一个布隆过滤器
+     * @param name 业务名称，例如 shop
+     * @param idScanner 遍历数据库中全部有效id的函数，用于构建过滤器
+     */
+    public void register(String name, Consumer<LongConsumer> idScanner) {
+        holders.put(name, new Holder(idScanner));
+    }
+
+    /**
+     * 判断id是否可能存在，过滤器未注册或尚未构建完成时返回true
+     */
+    public boolean mightContain(String name, Long id) {
+        if (id == null) {
+            return false;
+        }
+        Holder holder = holders.get(name);
+        if (holder == null) {
+            return true;
+        }
+        BloomFilter filter = holder.current;
+        if (filter == null || filter.mightContain(id)) {
+            return true;
+        }
+        // 本地判断不存在时，检查上次重建之后新增的id，redis不可用时不拦截
+        try {
+            if (stringRedisTemplate.opsForZSet().score(BLOOM_ADDED_KEY + name, id.toString()) == null) {
+                return false;
+            }
+        } catch (Exception e) {
+            log.warn("查询布隆过滤器{}新增的id失败", name, e);
+            return true;
+        }
+        holder.put(id);
+        return true;
+    }
+
+    /**
+     * 新增id，并通知其它节点
+     */
+    public void put(String name, Long id) {
+        Holder holder = holders.get(name);
+        if (holder == null || id == null) {
+            return;
+        }
+        holder.put(id);
+        stringRedisTemplate.opsForZSet().add(BLOOM_ADDED_KEY + name, id.toString(), System.currentTimeMillis());
+        stringRedisTemplate.convertAndSend(BLOOM_ADD_CHANNEL, name + ":" + id);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuildAll();
+    }
+
+    // 定期重建，清理已删除的id并修正误判率
+    @Scheduled(initialDelayString = "${hmdp.bloom.rebuild-interval-millis:3600000}",
+            fixedDelayString = "${hmdp.bloom.rebuild-interval-millis:3600000}")
+    public void rebuildAll() {
+        holders.forEach((name, holder) -> {
+            try {
+                long begin = System.currentTimeMillis();
+                long count = holder.rebuild(expectedInsertions, fpp);
+                stringRedisTemplate.opsForZSet().removeRangeByScore(BLOOM_ADDED_KEY + name, 0, begin - 2 * rebuildIntervalMillis);
+                log.info("布隆过滤器{}构建完成，元素数量：{}，耗时：{}ms", name, count, System.currentTimeMillis() - begin);
+            } catch (Exception e) {
+                log.error("布隆过滤器{}构建失败", name, e);
+            }
+        });
+    }
+
+    private static class Holder {
+        private final Consumer<LongConsumer> idScanner;
+        // 正在使用的过滤器，为null表示尚未构建
+        private volatile BloomFilter current;
+        // 重建过程中的过滤器，重建期间新增的id同时写入
+        private BloomFilter building;
+        // 新增id与切换过滤器互斥，新增的id一定写入切换后使用的过滤器
+        private final Object swapLock = new Object();
+
+        private Holder(Consumer<LongConsumer> idScanner) {
+            this.idScanner = idScanner;
+        }
+
+        private void put(long id) {
+            synchronized (swapLock) {
+                if (current != null) {
+                    current.put(id);
+                }
+                if (building != null) {
+                    building.put(id);
+                }
+            }
+        }
+
+        private synchronized long rebuild(long expectedInsertions, double fpp) {
+            BloomFilter filter = new BloomFilter(expectedInsertions, fpp);
+            synchronized (swapLock) {
+                building = filter;
+            }
+            long[] count = {0};
+            boolean completed = false;
+            try {
+                idScanner.accept(id -> {
+                    filter.put(id);
+                    count[0]++;
+                });
+                completed = true;
+            } finally {
+                synchronized (swapLock) {
+                    if (completed) {
+                        current = filter;
+                    }
+                    building = null;
+                }
+            }
+            return count[0];
+        }
+    }
+}
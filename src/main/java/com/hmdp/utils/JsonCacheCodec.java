@@ -0,0 +1,46 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * JSON格式的缓存编解码器，可读性好，便于排查问题
+ */
+public class JsonCacheCodec<T> implements CacheCodec<T> {
+
+    private final Class<T> type;
+
+    public JsonCacheCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public byte[] encode(T value) {
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] encodeWithLogicalExpire(T value, LocalDateTime expireTime) {
+        RedisData<T> redisData = new RedisData<>();
+        redisData.setData(value);
+        redisData.setExpireTime(expireTime);
+        return JSONUtil.toJsonStr(redisData).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public RedisData<T> decode(byte[] bytes) {
+        // 只解析一次json文本，再根据是否带有逻辑过期时间转换为对象
+        JSONObject json = JSONUtil.parseObj(new String(bytes, StandardCharsets.UTF_8));
+        RedisData<T> redisData = new RedisData<>();
+        if (json.size() == 2 && json.containsKey("expireTime") && json.containsKey("data")) {
+            redisData.setExpireTime(json.getLocalDateTime("expireTime", null));
+            redisData.setData(json.getJSONObject("data").toBean(type));
+        } else {
+            redisData.setData(json.toBean(type));
+        }
+        return redisData;
+    }
+}
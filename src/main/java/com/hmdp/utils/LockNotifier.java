@@ -0,0 +1,116 @@
+package com.hmdp.utils;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.hmdp.utils.RedisConstants.LOCK_RELEASE_CHANNEL;
+
+/**
+ * 分布式锁释放通知：持有锁的节点释放锁后通过redis频道广播锁的key，等待该锁的线程被唤醒，不再轮询
+ * <p>
+ * 每条释放通知只唤醒本节点最早等待的一个线程，避免大量线程同时被唤醒争抢锁
+ */
+@Component
+public class LockNotifier {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 锁的key -> 按登记顺序排列的等待该锁释放的future
+    private final ConcurrentHashMap<String, Queue<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+
+    public LockNotifier(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onRelease(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(LOCK_RELEASE_CHANNEL));
+    }
+
+    /**
+     * 登记等待锁释放，必须在尝试获取锁之前调用，避免错过获取失败与开始等待之间的释放通知；
+     * 获取锁成功后需要调用 {@link #cancel} 取消登记
+     */
+    public CompletableFuture<Void> register(String lockKey) {
+        CompletableFuture<Void> released = new CompletableFuture<>();
+        waiters.compute(lockKey, (k, queue) -> {
+            if (queue == null) {
+                queue = new ConcurrentLinkedQueue<>();
+            }
+            queue.add(released);
+            return queue;
+        });
+        return released;
+    }
+
+    /**
+     * 取消登记，不再等待锁释放
+     */
+    public void cancel(String lockKey, CompletableFuture<Void> released) {
+        released.cancel(false);
+        waiters.computeIfPresent(lockKey, (k, queue) -> {
+            queue.remove(released);
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    /**
+     * 等待锁释放通知
+     * @return true:收到通知，false:等待超时
+     */
+    public boolean await(String lockKey, CompletableFuture<Void> released, long timeoutMillis) {
+        try {
+            released.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            cancel(lockKey, released);
+            return false;
+        } catch (InterruptedException e) {
+            cancel(lockKey, released);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待锁释放被中断", e);
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 广播锁已释放
+     */
+    public void publishRelease(String lockKey) {
+        stringRedisTemplate.convertAndSend(LOCK_RELEASE_CHANNEL, lockKey);
+    }
+
+    /**
+     * 收到锁释放消息，唤醒本节点最早登记且仍在等待的线程
+     */
+    public void onRelease(String lockKey) {
+        waiters.computeIfPresent(lockKey, (k, queue) -> {
+            CompletableFuture<Void> released;
+            while ((released = queue.poll()) != null) {
+                if (released.complete(null)) {
+                    break;
+                }
+            }
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+}
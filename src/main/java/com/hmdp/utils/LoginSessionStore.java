@@ -0,0 +1,341 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_CODE_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_ICON_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_ICON_TTL;
+import static com.hmdp.utils.RedisConstants.LOGIN_PHONE_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_PHONE_TTL;
+import static com.hmdp.utils.RedisConstants.LOGIN_TOKEN_INVALIDATE_CHANNEL;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
+
+/**
+ * 登录态的读取、写入和续期
+ * <p>
+ * 每个请求都要校验token，登录态在本地缓存几秒，缓存期间不访问redis；本地未命中时用一次往返同时查询用户信息和剩余过期时间。
+ * 只有剩余时间低于总时长的一定比例时才续期，活跃用户每个周期只续期一次。
+ * 登出时删除redis中的登录态并广播给其它节点，其它原因导致的失效最迟在本地缓存过期后生效。
+ * <p>
+ * 登录态默认以紧凑格式保存为一个字符串，头像按用户id保存在 login:icon:用户id 中，登录和续期时延长有效期；读取脚本同时兼容旧的哈希格式。
+ * <p>
+ * 验证码登录时，手机号对应的用户以同样的紧凑格式缓存，命中时由一个脚本完成校验验证码、消费验证码和写入登录态。
+ */
+@Slf4j
+@Component
+public class LoginSessionStore {
+
+    static final DefaultRedisScript<List> READ_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        READ_SCRIPT.setLocation(new ClassPathResource("lua/session_get.lua"));
+        READ_SCRIPT.setResultType(List.class);
+    }
+
+    static final DefaultRedisScript<List> LOGIN_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        LOGIN_SCRIPT.setLocation(new ClassPathResource("lua/login.lua"));
+        LOGIN_SCRIPT.setResultType(List.class);
+    }
+
+    private static final byte[] MEMORY_USAGE = "USAGE".getBytes(StandardCharsets.UTF_8);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final LRUCache<String, Session> localSessions;
+    private final long ttlMillis;
+    private final long iconTtlMillis = TimeUnit.SECONDS.toMillis(LOGIN_ICON_TTL);
+    // 剩余时间低于该值时续期
+    private final long refreshBelowMillis;
+    // 是否以紧凑格式写入，关闭时写入哈希格式
+    private final boolean packed;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    public LoginSessionStore(StringRedisTemplate stringRedisTemplate,
+                             @Value("${hmdp.login.local-cache.maximum-size:10000}") int maximumSize,
+                             @Value("${hmdp.login.local-cache.expire-seconds:5}") long expireSeconds,
+                             @Value("${hmdp.login.refresh-ratio:0.5}") double refreshRatio,
+                             @Value("${hmdp.login.session-format:packed}") String sessionFormat) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.localSessions = CacheUtil.newLRUCache(maximumSize, TimeUnit.SECONDS.toMillis(expireSeconds));
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(LOGIN_USER_TTL);
+        this.refreshBelowMillis = (long) (ttlMillis * refreshRatio);
+        this.packed = !"hash".equalsIgnoreCase(sessionFormat);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onInvalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(LOGIN_TOKEN_INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 查询token对应的用户，必要时续期
+     * @return 用户信息，token不存在或已过期时返回null
+     */
+    public UserDTO get(String token) {
+        // 1.查询本地缓存
+        Session session = localSessions.get(token, false);
+        if (session == null) {
+            // 2.本地未命中，从redis查询
+            session = load(token);
+            if (session == null) {
+                return null;
+            }
+            localSessions.put(token, session);
+        }
+        // 3.剩余时间不足时续期，redis中的登录态已被删除时返回null
+        if (!refreshIfNecessary(token, session)) {
+            return null;
+        }
+        return session.user;
+    }
+
+    /**
+     * 校验并消费验证码，手机号对应的用户已缓存时同时写入登录态，只需要一次往返
+     * @param token 登录态的token，为null时不写入登录态
+     * @return 验证码错误时返回null；验证码正确时返回已缓存的用户，此时登录态已经写入；
+     * 用户未缓存时返回的user为null，需要查询数据库后调用 {@link #save(String, UserDTO, String)}
+     */
+    public CodeLogin loginWithCode(String phone, String code, String token) {
+        // 哈希格式的登录态由脚本返回用户后再写入
+        long scriptTtl = token != null && packed ? ttlMillis : 0;
+        List<?> result = stringRedisTemplate.execute(LOGIN_SCRIPT,
+                Arrays.asList(LOGIN_CODE_KEY + phone, LOGIN_PHONE_KEY + phone, LOGIN_USER_KEY + token),
+                StrUtil.nullToEmpty(code), String.valueOf(scriptTtl), LOGIN_ICON_KEY, String.valueOf(iconTtlMillis));
+        long status = result == null || result.isEmpty() ? 0 : (Long) result.get(0);
+        if (status == 0) {
+            return null;
+        }
+        if (status == 1) {
+            return new CodeLogin(null);
+        }
+        UserDTO user = UserHashCodec.unpack((String) result.get(1), result.size() > 2 ? (String) result.get(2) : null);
+        if (token != null && !packed) {
+            save(token, user);
+        } else if (token != null) {
+            localSessions.put(token, new Session(user, System.currentTimeMillis() + ttlMillis));
+        }
+        return new CodeLogin(user);
+    }
+
+    /**
+     * 保存登录态，用户信息和过期时间在一次往返中写入
+     */
+    public void save(String token, UserDTO user) {
+        save(token, user, null);
+    }
+
+    /**
+     * 保存登录态，同时缓存手机号对应的用户，在一次往返中写入
+     * @param token 登录态的token，为null时只缓存手机号
+     * @param phone 手机号，为null时不缓存
+     */
+    public void save(String token, UserDTO user, String phone) {
+        String packedUser = UserHashCodec.pack(user);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            if (token != null && packed) {
+                conn.pSetEx(LOGIN_USER_KEY + token, ttlMillis, packedUser);
+            } else if (token != null) {
+                conn.hMSet(LOGIN_USER_KEY + token, UserHashCodec.encode(user));
+                conn.pExpire(LOGIN_USER_KEY + token, ttlMillis);
+            }
+            if (phone != null) {
+                conn.setEx(LOGIN_PHONE_KEY + phone, LOGIN_PHONE_TTL, packedUser);
+            }
+            // 头像由同一用户的所有登录态和手机号缓存共用
+            if (user.getIcon() != null && (packed || phone != null)) {
+                conn.pSetEx(LOGIN_ICON_KEY + user.getId(), iconTtlMillis, user.getIcon());
+            }
+            return null;
+        });
+        if (token != null) {
+            localSessions.put(token, new Session(user, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * 删除登录态，并通知其它节点删除本地缓存
+     */
+    public void remove(String token) {
+        stringRedisTemplate.delete(LOGIN_USER_KEY + token);
+        localSessions.remove(token);
+        stringRedisTemplate.convertAndSend(LOGIN_TOKEN_INVALIDATE_CHANNEL, token);
+    }
+
+    void onInvalidate(String token) {
+        localSessions.remove(token);
+    }
+
+    private Session load(String token) {
+        // 一次往返读取登录态、头像和剩余有效期
+        List<?> result = stringRedisTemplate.execute(READ_SCRIPT, Collections.singletonList(LOGIN_USER_KEY + token), LOGIN_ICON_KEY);
+        if (result == null || result.size() < 2 || ((Long) result.get(0)) == 0) {
+            return null;
+        }
+        long pttl = (Long) result.get(1);
+        UserDTO user;
+        if ((Long) result.get(0) == 1) {
+            user = UserHashCodec.unpack((String) result.get(2), result.size() > 3 ? (String) result.get(3) : null);
+        } else {
+            Map<String, String> userMap = new HashMap<>(4);
+            for (int i = 2; i + 1 < result.size(); i += 2) {
+                userMap.put((String) result.get(i), (String) result.get(i + 1));
+            }
+            user = UserHashCodec.decode(userMap);
+            if (user == null) {
+                return null;
+            }
+        }
+        // 没有设置过期时间的登录态不需要续期
+        long expireAt = pttl < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + pttl;
+        return new Session(user, expireAt);
+    }
+
+    /**
+     * 抽样统计登录态占用的redis内存
+     * @param sampleSize 抽样的登录态和头像数量
+     * @return 各格式的登录态和头像的数量、平均字节数
+     */
+    public Map<String, Object> sampleMemory(int sampleSize) {
+        return stringRedisTemplate.execute((RedisCallback<Map<String, Object>>) connection -> {
+            // 1.SCAN抽取登录态和头像的key，不阻塞redis
+            List<byte[]> sessionKeys = scan(connection, LOGIN_USER_KEY + "*", sampleSize);
+            List<byte[]> iconKeys = scan(connection, LOGIN_ICON_KEY + "*", sampleSize);
+            // 2.用管道一次往返查询所有key的类型和MEMORY USAGE
+            connection.openPipeline();
+            for (byte[] key : sessionKeys) {
+                connection.type(key);
+                connection.execute("MEMORY", MEMORY_USAGE, key);
+            }
+            for (byte[] key : iconKeys) {
+                connection.execute("MEMORY", MEMORY_USAGE, key);
+            }
+            List<Object> results = connection.closePipeline();
+            // 3.登录态按格式统计，头像单独统计
+            long[] counts = new long[3];
+            long[] bytes = new long[3];
+            for (int i = 0; i < sessionKeys.size(); i++) {
+                Object type = results.get(i * 2);
+                Object usage = results.get(i * 2 + 1);
+                if (!(usage instanceof Long) || (type != DataType.STRING && type != DataType.HASH)) {
+                    continue;
+                }
+                int format = type == DataType.STRING ? 0 : 1;
+                counts[format]++;
+                bytes[format] += (Long) usage;
+            }
+            for (int i = sessionKeys.size() * 2; i < results.size(); i++) {
+                if (results.get(i) instanceof Long) {
+                    counts[2]++;
+                    bytes[2] += (Long) results.get(i);
+                }
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("sampled", sessionKeys.size());
+            report.put("packedCount", counts[0]);
+            report.put("packedAvgBytes", counts[0] == 0 ? 0 : bytes[0] / counts[0]);
+            report.put("hashCount", counts[1]);
+            report.put("hashAvgBytes", counts[1] == 0 ? 0 : bytes[1] / counts[1]);
+            report.put("iconCount", counts[2]);
+            report.put("iconAvgBytes", counts[2] == 0 ? 0 : bytes[2] / counts[2]);
+            return report;
+        });
+    }
+
+    private static List<byte[]> scan(RedisConnection connection, String pattern, int limit) {
+        List<byte[]> keys = new ArrayList<>(limit);
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(1000).build();
+        try (Cursor<byte[]> cursor = connection.scan(options)) {
+            while (cursor.hasNext() && keys.size() < limit) {
+                keys.add(cursor.next());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return keys;
+    }
+
+    private boolean refreshIfNecessary(String token, Session session) {
+        long now = System.currentTimeMillis();
+        if (session.expireAt - now >= refreshBelowMillis) {
+            return true;
+        }
+        // 先更新本地记录的过期时间，并发的请求不会重复续期
+        session.expireAt = now + ttlMillis;
+        // 登录态和头像在一次往返中续期
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.pExpire(LOGIN_USER_KEY + token, ttlMillis);
+            conn.pExpire(LOGIN_ICON_KEY + session.user.getId(), iconTtlMillis);
+            return null;
+        });
+        if (!Boolean.TRUE.equals(results.get(0))) {
+            localSessions.remove(token);
+            return false;
+        }
+        return true;
+    }
+
+    public static class CodeLogin {
+        private final UserDTO user;
+
+        private CodeLogin(UserDTO user) {
+            this.user = user;
+        }
+
+        /**
+         * 手机号对应的用户，未缓存时为null
+         */
+        public UserDTO getUser() {
+            return user;
+        }
+    }
+
+    private static class Session {
+        private final UserDTO user;
+        // redis中登录态的过期时间
+        private volatile long expireAt;
+
+        private Session(UserDTO user, long expireAt) {
+            this.user = user;
+            this.expireAt = expireAt;
+        }
+    }
+}
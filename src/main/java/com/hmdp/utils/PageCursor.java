@@ -0,0 +1,70 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * 游标分页的位置，记录上一页最后一条数据的排序值和id
+ * <p>
+ * 对外编码为url安全的base64字符串，客户端只需原样传回，下一页从该位置之后继续查询，不需要offset和count。
+ * 同一个接口有多种数据来源、排序值含义不同时，用来源标记区分，不能把一种来源的游标用于另一种来源。
+ */
+@Data
+public class PageCursor {
+
+    // 数据来源的标记，只有一种来源时为null，不能包含冒号
+    private final String source;
+    // 排序值，只按id排序时为null
+    private final Long sortValue;
+    private final long id;
+
+    public PageCursor(String source, Long sortValue, long id) {
+        this.source = source;
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+    public PageCursor(Long sortValue, long id) {
+        this(null, sortValue, id);
+    }
+
+    public String encode() {
+        String raw = (sortValue == null ? "" : sortValue.toString()) + ":" + id;
+        if (source != null) {
+            raw = source + ":" + raw;
+        }
+        return Base64.encodeUrlSafe(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 是否由指定来源生成
+    public boolean isFrom(String source) {
+        return Objects.equals(this.source, source);
+    }
+
+    /**
+     * 解析客户端传回的游标
+     * @return 游标为空时返回null，表示从第一页开始
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public static PageCursor decode(String cursor) {
+        if (StrUtil.isBlank(cursor)) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.decode(cursor), StandardCharsets.UTF_8).split(":", -1);
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("无效的分页游标：" + cursor);
+            }
+            String source = parts.length == 3 ? parts[0] : null;
+            String sortValue = parts[parts.length - 2];
+            return new PageCursor(source, sortValue.isEmpty() ? null : Long.valueOf(sortValue),
+                    Long.parseLong(parts[parts.length - 1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标：" + cursor, e);
+        }
+    }
+}
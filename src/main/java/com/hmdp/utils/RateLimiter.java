@@ -0,0 +1,125 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.lang.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.RATE_LIMIT_KEY;
+
+/**
+ * 滑动窗口限流
+ * <p>
+ * redis中每个key是一个有序集合，保存窗口内通过的请求的时间，由lua脚本按redis服务器的时间原子地清理、计数和写入，所有节点共用同一个窗口。
+ * 本地为每个key维护一个令牌桶作为预过滤：容量为limit，每个窗口补充limit个令牌，只有redis放行的请求消耗令牌。
+ * 本地令牌耗尽说明本节点在一个窗口内已经放行了limit个请求，redis一定会拒绝，不需要访问redis；
+ * redis拒绝时返回需要等待的时间，等待期间本节点直接拒绝。除了等待redis结果的请求暂时占用的令牌，两种情况都不会拒绝redis会放行的请求。
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    static final DefaultRedisScript<Long> SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        SCRIPT.setLocation(new ClassPathResource("lua/rate_limit.lua"));
+        SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final LRUCache<String, Bucket> buckets;
+    // 实例标识，与序号一起组成有序集合中每个请求的唯一标识
+    private final String idPrefix = UUID.randomUUID().toString(true) + "-";
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong localRejected = new AtomicLong();
+    private final AtomicLong redisRejected = new AtomicLong();
+
+    public RateLimiter(StringRedisTemplate stringRedisTemplate,
+                       @Value("${hmdp.rate-limit.local-buckets:100000}") int maximumBuckets) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        // 淘汰的令牌桶下次重新从满的状态开始，只会少拦截，不会误拒
+        this.buckets = CacheUtil.newLRUCache(maximumBuckets);
+    }
+
+    /**
+     * 尝试通过一次请求
+     * @param key          计数的key，不包含前缀
+     * @param limit        窗口内允许的请求数
+     * @param windowMillis 窗口长度
+     * @return 通过返回0，被限流返回建议等待的毫秒数
+     */
+    public long tryAcquire(String key, int limit, long windowMillis) {
+        long now = System.currentTimeMillis();
+        // 1.本地预过滤
+        Bucket bucket = buckets.get(key, false, () -> new Bucket(limit, now));
+        synchronized (bucket) {
+            long wait = bucket.check(limit, windowMillis, now);
+            if (wait > 0) {
+                localRejected.incrementAndGet();
+                return wait;
+            }
+            // 先占用令牌，redis拒绝时归还，并发的请求不会超过本地令牌数
+            bucket.tokens -= 1;
+        }
+        // 2.redis滑动窗口计数，redis不可用时只按本地令牌桶限流
+        Long wait;
+        try {
+            wait = stringRedisTemplate.execute(SCRIPT, Collections.singletonList(RATE_LIMIT_KEY + key),
+                    String.valueOf(windowMillis), String.valueOf(limit),
+                    idPrefix + sequence.incrementAndGet());
+        } catch (Exception e) {
+            log.warn("限流计数失败，只使用本地限流，key：{}", key, e);
+            return 0;
+        }
+        if (wait == null || wait <= 0) {
+            return 0;
+        }
+        // 3.被redis拒绝，归还令牌，等待期间本地直接拒绝
+        redisRejected.incrementAndGet();
+        synchronized (bucket) {
+            bucket.tokens = Math.min(limit, bucket.tokens + 1);
+            bucket.blockedUntil = Math.max(bucket.blockedUntil, now + wait);
+        }
+        return wait;
+    }
+
+    /**
+     * 本地拒绝和redis拒绝的次数
+     */
+    public long[] rejectedCounts() {
+        return new long[]{localRejected.get(), redisRejected.get()};
+    }
+
+    private static class Bucket {
+        private double tokens;
+        private long refilledAt;
+        // redis拒绝后，窗口内最早的请求移出窗口前一定会被拒绝
+        private long blockedUntil;
+
+        private Bucket(int limit, long now) {
+            this.tokens = limit;
+            this.refilledAt = now;
+        }
+
+        // 补充令牌后判断能否放行，不能时返回需要等待的毫秒数
+        private long check(int limit, long windowMillis, long now) {
+            if (now < blockedUntil) {
+                return blockedUntil - now;
+            }
+            tokens = Math.min(limit, tokens + (double) (now - refilledAt) * limit / windowMillis);
+            refilledAt = now;
+            if (tokens >= 1) {
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) * windowMillis / limit));
+        }
+    }
+}
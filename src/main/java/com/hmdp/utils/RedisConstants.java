@@ -4,20 +4,45 @@ public class RedisConstants {
     public static final String LOGIN_CODE_KEY = "login:code:";
     public static final Long LOGIN_CODE_TTL = 2L;
     public static final String LOGIN_USER_KEY = "login:token:";
+    // 登录态的有效期，单位秒
     public static final Long LOGIN_USER_TTL = 36000L;
+    // 用户头像，由同一用户的所有登录态和手机号缓存共用，有效期不短于两者，登录和续期时延长，单位秒
+    public static final String LOGIN_ICON_KEY = "login:icon:";
+    public static final Long LOGIN_ICON_TTL = 86400L;
+    // 手机号对应用户的缓存，单位秒
+    public static final String LOGIN_PHONE_KEY = "login:phone:";
+    public static final Long LOGIN_PHONE_TTL = 86400L;
+    public static final String LOGIN_TOKEN_INVALIDATE_CHANNEL = "login:token:invalidate";
+    public static final String LOGIN_REVOKED_KEY = "login:revoked";
+    public static final String LOGIN_TOKEN_REVOKE_CHANNEL = "login:token:revoke";
 
     public static final Long CACHE_NULL_TTL = 2L;
 
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
+    public static final String CACHE_SHOP_INVALIDATE_CHANNEL = "cache:shop:invalidate";
+    public static final String CACHE_SHOP_ACCESS_KEY = "cache:shop:access:";
+    public static final Long CACHE_SHOP_ACCESS_TTL = 25L;
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
 
+    public static final String LOCK_KEY_PREFIX = "lock:";
+    public static final long CACHE_LOCK_WAIT_MILLIS = 200L;
+    // 等待其它节点重建缓存的总时长，超过后直接查询数据库
+    public static final long CACHE_LOCK_WAIT_BUDGET_MILLIS = 2000L;
+    public static final String LOCK_RELEASE_CHANNEL = "lock:release";
+
+    public static final String BLOOM_ADD_CHANNEL = "bloom:add";
+    public static final String BLOOM_ADDED_KEY = "bloom:added:";
+    public static final String BLOOM_SHOP = "shop";
+
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
+    public static final String SHOP_INDEX_CHANGED_CHANNEL = "shop:index:changed";
+    public static final String SHOP_RANK_KEY = "shop:rank:";
     public static final String USER_SIGN_KEY = "sign:";
 
     public static final long CACHE_SHOP_EXPIRE = 36000L;
@@ -26,4 +51,7 @@ public class RedisConstants {
 
     public static final String CACHE_SHOP_TYPE_KEY = "cache:shop:type";
     public static final long CACHE_SHOP_TYPE_EXPIRE = 36000L;
+    public static final String RATE_LIMIT_KEY = "rate:limit:";
+    public static final String CACHE_VERSION_KEY = "cache:version:";
+    public static final String CACHE_SHOP_TYPE_INVALIDATE_CHANNEL = "cache:shop:type:invalidate";
 }
@@ -0,0 +1,131 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOCK_KEY_PREFIX;
+import static com.hmdp.utils.RedisConstants.LOCK_RELEASE_CHANNEL;
+
+/**
+ * 分布式锁的工厂，负责执行加锁、释放、续期脚本，以及看门狗续期
+ * <p>
+ * 未指定租期的锁使用默认租期，由看门狗每隔三分之一租期续期一次，持有锁的节点宕机后锁在一个租期内自动释放。
+ */
+@Slf4j
+@Component
+public class RedisLockClient {
+
+    static final DefaultRedisScript<Long> LOCK_SCRIPT = script("lua/lock.lua");
+    static final DefaultRedisScript<Long> UNLOCK_SCRIPT = script("lua/unlock.lua");
+    static final DefaultRedisScript<Long> RENEW_SCRIPT = script("lua/renew.lua");
+
+    // 节点标识，与线程id一起组成锁的持有者标识
+    private static final String ID_PREFIX = UUID.randomUUID().toString(true) + "-";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final LockNotifier lockNotifier;
+    private final long leaseMillis;
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "lock-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 锁的key:持有者标识 -> 续期任务
+    private final Map<String, ScheduledFuture<?>> renewals = new ConcurrentHashMap<>();
+
+    public RedisLockClient(StringRedisTemplate stringRedisTemplate, LockNotifier lockNotifier,
+                           @Value("${hmdp.lock.lease-seconds:30}") long leaseSeconds) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.lockNotifier = lockNotifier;
+        this.leaseMillis = TimeUnit.SECONDS.toMillis(leaseSeconds);
+    }
+
+    private static DefaultRedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 获取可重入锁
+     * @param name 锁的名称，实际的key为 lock:名称
+     */
+    public ILock getLock(String name) {
+        return getLock(name, true);
+    }
+
+    public ILock getLock(String name, boolean reentrant) {
+        return new SimpleRedisLock(LOCK_KEY_PREFIX + name, reentrant, this);
+    }
+
+    LockNotifier lockNotifier() {
+        return lockNotifier;
+    }
+
+    String ownerToken() {
+        return ID_PREFIX + Thread.currentThread().getId();
+    }
+
+    // 获取成功返回null，失败返回锁的剩余有效期毫秒
+    Long acquire(String key, String owner, long lease, boolean reentrant) {
+        return stringRedisTemplate.execute(LOCK_SCRIPT, Collections.singletonList(key),
+                owner, String.valueOf(lease < 0 ? leaseMillis : lease), reentrant ? "1" : "0");
+    }
+
+    // 完全释放返回true，仍持有（重入）或不是持有者返回false
+    boolean release(String key, String owner) {
+        Long result = stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(key),
+                owner, String.valueOf(leaseMillis), LOCK_RELEASE_CHANNEL);
+        if (result == null) {
+            log.warn("释放锁失败，锁已过期或被其它持有者获取，key：{}", key);
+            cancelRenewal(key, owner);
+            return false;
+        }
+        return result == 1;
+    }
+
+    void scheduleRenewal(String key, String owner) {
+        long period = leaseMillis / 3;
+        renewals.computeIfAbsent(key + ":" + owner, k -> watchdog.scheduleAtFixedRate(() -> {
+            try {
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key),
+                        owner, String.valueOf(leaseMillis));
+                if (renewed == null || renewed == 0) {
+                    cancelRenewal(key, owner);
+                }
+            } catch (Exception e) {
+                // 续期失败不取消任务，下一次继续尝试，锁在租期内仍然有效
+                log.error("锁续期失败，key：{}", key, e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS));
+    }
+
+    void cancelRenewal(String key, String owner) {
+        ScheduledFuture<?> future = renewals.remove(key + ":" + owner);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+}
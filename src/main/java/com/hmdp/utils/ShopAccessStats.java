@@ -0,0 +1,230 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.collection.CollUtil;
+import com.hmdp.entity.Shop;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_ACCESS_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_ACCESS_TTL;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_EXPIRE;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
+/**
+ * 店铺的访问统计：热点店铺探测和按小时汇总的访问次数，以及根据访问统计预热店铺缓存
+ * <p>
+ * 热点店铺的缓存改写为逻辑过期，访问量回落后恢复按TTL过期；访问次数每分钟汇总到redis，启动时用于确定预热的店铺。
+ */
+@Slf4j
+@Component
+public class ShopAccessStats {
+
+    private static final int HOT_KEY_SLOTS = 6;
+    private static final int HOT_KEY_SKETCH_WIDTH = 16384;
+    private static final int HOT_KEY_SKETCH_DEPTH = 4;
+    private static final int MAX_ACCESS_COUNTERS = 100000;
+    private static final DateTimeFormatter ACCESS_HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHH");
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheCodec<Shop> shopCacheCodec;
+
+    // 店铺缓存的查询策略，全局使用逻辑过期时不需要探测热点
+    @Value("${hmdp.cache.shop-strategy:PASS_THROUGH}")
+    private CacheStrategy cacheStrategy;
+
+    // 需要预热的热点店铺id，为空时使用最近的访问统计
+    @Value("${hmdp.cache.warm-up.hot-ids:}")
+    private List<Long> warmUpHotIds;
+
+    // 最多预热的店铺数量
+    @Value("${hmdp.cache.warm-up.max-shops:1000}")
+    private int warmUpMaxShops;
+
+    // 每批查询和写入的店铺数量
+    @Value("${hmdp.cache.warm-up.batch-size:200}")
+    private int warmUpBatchSize;
+
+    // 使用访问统计时，统计最近多少个小时的访问
+    @Value("${hmdp.cache.warm-up.stats-hours:2}")
+    private int warmUpStatsHours;
+
+    // 是否开启热点店铺探测，热点店铺自动切换为逻辑过期
+    @Value("${hmdp.cache.hot-key.enabled:true}")
+    private boolean hotKeyEnabled;
+
+    // 热点探测的滑动窗口长度
+    @Value("${hmdp.cache.hot-key.window-seconds:60}")
+    private long hotKeyWindowSeconds;
+
+    // 窗口内访问次数达到该值时晋升为热点
+    @Value("${hmdp.cache.hot-key.promote-threshold:600}")
+    private int hotKeyPromoteThreshold;
+
+    // 窗口内访问次数低于该值时取消热点
+    @Value("${hmdp.cache.hot-key.demote-threshold:120}")
+    private int hotKeyDemoteThreshold;
+
+    @Value("${hmdp.cache.hot-key.max-keys:1000}")
+    private int hotKeyMaxKeys;
+
+    // 热点店铺缓存的逻辑过期时间，过期后在后台重建
+    @Value("${hmdp.cache.hot-key.expire-seconds:60}")
+    private long hotKeyExpireSeconds;
+
+    // 本节点最近一个统计周期内的店铺访问次数，定期汇总到redis
+    private volatile Map<Long, LongAdder> accessCounts = new ConcurrentHashMap<>();
+
+    // 热点店铺探测器，全局使用逻辑过期策略时不需要探测
+    private HotKeyDetector hotKeyDetector;
+
+    @PostConstruct
+    public void init() {
+        if (hotKeyEnabled && cacheStrategy != CacheStrategy.LOGICAL_EXPIRE) {
+            hotKeyDetector = new HotKeyDetector(TimeUnit.SECONDS.toMillis(hotKeyWindowSeconds), HOT_KEY_SLOTS,
+                    HOT_KEY_SKETCH_WIDTH, HOT_KEY_SKETCH_DEPTH, hotKeyPromoteThreshold, hotKeyDemoteThreshold, hotKeyMaxKeys);
+        }
+    }
+
+    /**
+     * 记录店铺的访问次数，访问量达到阈值的店铺晋升为热点，缓存在后台改写为逻辑过期的数据
+     * @param dbFallback 晋升时查询店铺的方法
+     */
+    public void record(Long id, Function<Long, Shop> dbFallback) {
+        if (hotKeyDetector != null && hotKeyDetector.record(id)) {
+            log.debug("店铺晋升为热点，id：{}", id);
+            cacheClient.rebuildWithLogicalExpireAsync(CACHE_SHOP_KEY, id, shopCacheCodec,
+                    dbFallback, hotKeyExpireSeconds, TimeUnit.SECONDS);
+        }
+        Map<Long, LongAdder> counts = accessCounts;
+        LongAdder counter = counts.get(id);
+        if (counter == null) {
+            if (counts.size() >= MAX_ACCESS_COUNTERS) {
+                return;
+            }
+            counter = counts.computeIfAbsent(id, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    public boolean isHot(Long id) {
+        return hotKeyDetector != null && hotKeyDetector.isHot(id);
+    }
+
+    /**
+     * 热点店铺缓存的逻辑过期时间，单位秒
+     */
+    public long hotExpireSeconds() {
+        return hotKeyExpireSeconds;
+    }
+
+    /**
+     * 当前的热点店铺和窗口内的访问次数
+     */
+    public Map<Long, Integer> hotKeys() {
+        return hotKeyDetector == null ? Collections.emptyMap() : hotKeyDetector.hotKeys();
+    }
+
+    // 定期取消访问量回落的热点店铺，缓存恢复由TTL控制过期
+    @Scheduled(fixedDelayString = "${hmdp.cache.hot-key.demote-interval-millis:10000}")
+    public void demoteHotShops() {
+        if (hotKeyDetector == null) {
+            return;
+        }
+        for (Long id : hotKeyDetector.demote()) {
+            log.debug("店铺取消热点，id：{}", id);
+            cacheClient.expire(CACHE_SHOP_KEY + id, CACHE_SHOP_EXPIRE, TimeUnit.MINUTES);
+        }
+    }
+
+    // 每分钟将本节点的访问次数汇总到redis中按小时划分的访问统计
+    @Scheduled(fixedDelay = 60000)
+    public void flushAccessStats() {
+        Map<Long, LongAdder> counts = accessCounts;
+        if (counts.isEmpty()) {
+            return;
+        }
+        accessCounts = new ConcurrentHashMap<>();
+        String key = CACHE_SHOP_ACCESS_KEY + LocalDateTime.now().format(ACCESS_HOUR_FORMATTER);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            counts.forEach((id, counter) -> conn.zIncrBy(key, counter.sum(), id.toString()));
+            conn.expire(key, TimeUnit.HOURS.toSeconds(CACHE_SHOP_ACCESS_TTL));
+            return null;
+        });
+    }
+
+    /**
+     * 预热店铺缓存，写入格式与当前的缓存策略一致
+     * @param loader 按id批量查询店铺的方法
+     * @return 预热的店铺数量
+     */
+    public int warmUp(Function<List<Long>, List<Shop>> loader) {
+        // 1.确定需要预热的店铺：优先使用配置的热点id，否则使用最近的访问统计
+        List<Long> ids = CollUtil.isNotEmpty(warmUpHotIds) ? warmUpHotIds : queryRecentHotIds();
+        ids = ids.stream().distinct().sorted().limit(warmUpMaxShops).collect(Collectors.toList());
+        // 2.按id顺序分批查询，用管道批量写入redis
+        int count = 0;
+        for (List<Long> batch : CollUtil.split(ids, warmUpBatchSize)) {
+            List<Shop> shops = loader.apply(batch);
+            Map<String, Shop> values = new LinkedHashMap<>(shops.size() * 2);
+            shops.forEach(shop -> values.put(CACHE_SHOP_KEY + shop.getId(), shop));
+            if (cacheStrategy == CacheStrategy.LOGICAL_EXPIRE) {
+                cacheClient.setBatchWithLogicalExpire(values, shopCacheCodec, CACHE_SHOP_EXPIRE, TimeUnit.MINUTES);
+            } else {
+                cacheClient.setBatch(values, shopCacheCodec, CACHE_SHOP_EXPIRE, TimeUnit.MINUTES);
+            }
+            count += shops.size();
+        }
+        return count;
+    }
+
+    // 合并最近几个小时的访问统计，返回访问次数最多的店铺id
+    private List<Long> queryRecentHotIds() {
+        Map<Long, Double> scores = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < warmUpStatsHours; i++) {
+            String key = CACHE_SHOP_ACCESS_KEY + now.minusHours(i).format(ACCESS_HOUR_FORMATTER);
+            Set<ZSetOperations.TypedTuple<String>> tuples =
+                    stringRedisTemplate.opsForZSet().reverseRangeWithScores(key, 0, warmUpMaxShops - 1);
+            if (tuples == null) {
+                continue;
+            }
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                scores.merge(Long.valueOf(tuple.getValue()), tuple.getScore(), Double::sum);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(warmUpMaxShops)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
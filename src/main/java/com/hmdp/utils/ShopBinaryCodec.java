@@ -0,0 +1,242 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * 店铺缓存的紧凑二进制编解码器
+ * <p>
+ * 格式：魔数(1字节) + 版本(1字节) + 标志位(1字节) + [逻辑过期时间毫秒(8字节)] + 字段列表。
+ * 每个字段以 (字段编号 << 3 | 类型) 的varint开头，类型决定值的长度，解码时跳过不认识的字段，
+ * 新增字段只需要使用新的编号，新旧版本可以互相读取。为null的字段不写入。
+ * 不是以魔数开头的数据按JSON格式解码，兼容已有的JSON缓存。
+ */
+public class ShopBinaryCodec implements CacheCodec<Shop> {
+
+    private static final byte MAGIC = (byte) 0xB5;
+    private static final byte VERSION = 1;
+    private static final byte FLAG_LOGICAL_EXPIRE = 1;
+
+    private static final int TYPE_VARINT = 0;
+    private static final int TYPE_FIXED64 = 1;
+    private static final int TYPE_BYTES = 2;
+
+    private static final int ID = 1;
+    private static final int NAME = 2;
+    private static final int TYPE_ID = 3;
+    private static final int IMAGES = 4;
+    private static final int AREA = 5;
+    private static final int ADDRESS = 6;
+    private static final int X = 7;
+    private static final int Y = 8;
+    private static final int AVG_PRICE = 9;
+    private static final int SOLD = 10;
+    private static final int COMMENTS = 11;
+    private static final int SCORE = 12;
+    private static final int OPEN_HOURS = 13;
+    private static final int CREATE_TIME = 14;
+    private static final int UPDATE_TIME = 15;
+
+    private final JsonCacheCodec<Shop> jsonCodec = new JsonCacheCodec<>(Shop.class);
+
+    @Override
+    public byte[] encode(Shop shop) {
+        return write(shop, null);
+    }
+
+    @Override
+    public byte[] encodeWithLogicalExpire(Shop shop, LocalDateTime expireTime) {
+        return write(shop, expireTime);
+    }
+
+    @Override
+    public RedisData<Shop> decode(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != MAGIC) {
+            return jsonCodec.decode(bytes);
+        }
+        Reader reader = new Reader(bytes, 1);
+        int version = reader.buf[reader.pos++];
+        if (version > VERSION) {
+            throw new IllegalStateException("不支持的店铺缓存版本：" + version);
+        }
+        int flags = reader.buf[reader.pos++];
+        RedisData<Shop> redisData = new RedisData<>();
+        if ((flags & FLAG_LOGICAL_EXPIRE) != 0) {
+            redisData.setExpireTime(toLocalDateTime(reader.readFixed64()));
+        }
+        Shop shop = new Shop();
+        while (reader.pos < bytes.length) {
+            int tag = (int) reader.readVarint();
+            switch (tag >>> 3) {
+                case ID: shop.setId(reader.readVarint()); break;
+                case NAME: shop.setName(reader.readString()); break;
+                case TYPE_ID: shop.setTypeId(reader.readVarint()); break;
+                case IMAGES: shop.setImages(reader.readString()); break;
+                case AREA: shop.setArea(reader.readString()); break;
+                case ADDRESS: shop.setAddress(reader.readString()); break;
+                case X: shop.setX(Double.longBitsToDouble(reader.readFixed64())); break;
+                case Y: shop.setY(Double.longBitsToDouble(reader.readFixed64())); break;
+                case AVG_PRICE: shop.setAvgPrice(reader.readVarint()); break;
+                case SOLD: shop.setSold((int) reader.readVarint()); break;
+                case COMMENTS: shop.setComments((int) reader.readVarint()); break;
+                case SCORE: shop.setScore((int) reader.readVarint()); break;
+                case OPEN_HOURS: shop.setOpenHours(reader.readString()); break;
+                case CREATE_TIME: shop.setCreateTime(toLocalDateTime(reader.readVarint())); break;
+                case UPDATE_TIME: shop.setUpdateTime(toLocalDateTime(reader.readVarint())); break;
+                default: reader.skip(tag & 7);
+            }
+        }
+        redisData.setData(shop);
+        return redisData;
+    }
+
+    private byte[] write(Shop shop, LocalDateTime expireTime) {
+        Writer writer = new Writer();
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeByte(expireTime == null ? 0 : FLAG_LOGICAL_EXPIRE);
+        if (expireTime != null) {
+            writer.writeFixed64(toEpochMilli(expireTime));
+        }
+        writer.varintField(ID, shop.getId());
+        writer.stringField(NAME, shop.getName());
+        writer.varintField(TYPE_ID, shop.getTypeId());
+        writer.stringField(IMAGES, shop.getImages());
+        writer.stringField(AREA, shop.getArea());
+        writer.stringField(ADDRESS, shop.getAddress());
+        writer.doubleField(X, shop.getX());
+        writer.doubleField(Y, shop.getY());
+        writer.varintField(AVG_PRICE, shop.getAvgPrice());
+        writer.varintField(SOLD, shop.getSold() == null ? null : shop.getSold().longValue());
+        writer.varintField(COMMENTS, shop.getComments() == null ? null : shop.getComments().longValue());
+        writer.varintField(SCORE, shop.getScore() == null ? null : shop.getScore().longValue());
+        writer.stringField(OPEN_HOURS, shop.getOpenHours());
+        writer.varintField(CREATE_TIME, shop.getCreateTime() == null ? null : toEpochMilli(shop.getCreateTime()));
+        writer.varintField(UPDATE_TIME, shop.getUpdateTime() == null ? null : toEpochMilli(shop.getUpdateTime()));
+        return writer.toByteArray();
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMilli) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMilli, 1000L),
+                (int) Math.floorMod(epochMilli, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private static class Writer {
+        private byte[] buf = new byte[256];
+        private int pos;
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeFixed64(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                buf[pos++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        void varintField(int field, Long value) {
+            if (value != null) {
+                writeVarint((long) field << 3 | TYPE_VARINT);
+                writeVarint(value);
+            }
+        }
+
+        void doubleField(int field, Double value) {
+            if (value != null) {
+                writeVarint((long) field << 3 | TYPE_FIXED64);
+                writeFixed64(Double.doubleToRawLongBits(value));
+            }
+        }
+
+        void stringField(int field, String value) {
+            if (value != null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint((long) field << 3 | TYPE_BYTES);
+                writeVarint(bytes.length);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buf, pos, bytes.length);
+                pos += bytes.length;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int size) {
+            if (pos + size > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + size));
+            }
+        }
+    }
+
+    private static class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buf[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("店铺缓存数据格式错误");
+        }
+
+        long readFixed64() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value |= (long) (buf[pos++] & 0xFF) << (i * 8);
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        void skip(int type) {
+            switch (type) {
+                case TYPE_VARINT: readVarint(); break;
+                case TYPE_FIXED64: pos += 8; break;
+                case TYPE_BYTES: {
+                    int length = (int) readVarint();
+                    pos += length;
+                    break;
+                }
+                default: throw new IllegalStateException("未知的字段类型：" + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Shop;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hmdp.utils.RedisConstants.SHOP_GEO_KEY;
+import static com.hmdp.utils.RedisConstants.SHOP_INDEX_CHANGED_CHANNEL;
+
+/**
+ * 店铺的坐标索引和名称索引：redis的GEO集合，本地坐标索引、名称索引和前缀树
+ * <p>
+ * 店铺新增或更新后，本节点直接更新索引，并把索引用到的字段通过频道发给其它节点，其它节点不需要查询数据库。
+ * redis GEO查询在独立的线程池中执行，请求线程只等待有限的时间，超时、失败或线程池已满时使用本地坐标索引。
+ */
+@Slf4j
+@Component
+public class ShopIndexService {
+
+    // 本地坐标索引的网格间隔，约1公里
+    private static final double GEO_INDEX_CELL_DEGREES = 0.01;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 是否使用本地名称索引查询店铺，关闭时使用数据库模糊查询
+    @Value("${hmdp.search.name-index.enabled:true}")
+    private boolean nameIndexEnabled;
+
+    // 名称前缀补全返回的店铺数量
+    @Value("${hmdp.search.suggest.top-k:10}")
+    private int suggestTopK;
+
+    // 是否优先使用本地坐标索引查询附近店铺，关闭时只在redis不可用时使用
+    @Value("${hmdp.geo.prefer-local-index:false}")
+    private boolean preferLocalGeoIndex;
+
+    // redis GEO查询的超时时间，超时后使用本地坐标索引
+    @Value("${hmdp.geo.redis-timeout-millis:200}")
+    private long geoRedisTimeoutMillis;
+
+    @Value("${hmdp.geo.redis-threads:8}")
+    private int geoRedisThreads;
+
+    // 本节点的标识，用于忽略自己发出的索引变更消息
+    private final String nodeId = IdUtil.simpleUUID();
+
+    // 本地店铺坐标索引，redis GEO不可用时作为附近店铺查询的降级
+    private final ShopSpatialIndex shopSpatialIndex = new ShopSpatialIndex(GEO_INDEX_CELL_DEGREES);
+
+    // 本地店铺名称索引和前缀树，加载完成之前按名称查询仍然使用数据库
+    private final ShopNameIndex shopNameIndex = new ShopNameIndex();
+    private ShopNameTrie shopNameTrie;
+    private volatile boolean nameIndexLoaded;
+
+    // 执行redis GEO查询的线程池，请求线程只等待有限的时间，队列满时直接使用本地坐标索引
+    private ThreadPoolExecutor geoExecutor;
+
+    @PostConstruct
+    public void init() {
+        shopNameTrie = new ShopNameTrie(suggestTopK);
+        AtomicInteger geoThreadNumber = new AtomicInteger();
+        geoExecutor = new ThreadPoolExecutor(geoRedisThreads, geoRedisThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(geoRedisThreads * 16),
+                r -> {
+                    Thread thread = new Thread(r, "shop-geo-" + geoThreadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // 订阅店铺索引变更消息，用消息中的字段更新本节点的索引，本节点发出的消息已经在本地更新过
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            JSONObject body = JSONUtil.parseObj(new String(message.getBody(), StandardCharsets.UTF_8));
+            if (nodeId.equals(body.getStr("node"))) {
+                return;
+            }
+            Shop shop = body.toBean(Shop.class);
+            indexGeo(shop.getId(), shop);
+            indexName(shop.getId(), shop);
+        }, new ChannelTopic(SHOP_INDEX_CHANGED_CHANNEL));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        geoExecutor.shutdownNow();
+    }
+
+    /**
+     * 查询指定类型距离最近的limit个店铺，优先使用redis GEO，redis不可用时使用本地坐标索引
+     */
+    public Nearby nearby(Integer typeId, double x, double y, int limit) {
+        List<ShopSpatialIndex.Neighbor> neighbors = preferLocalGeoIndex ? null : geoRadius(typeId, x, y, limit);
+        boolean redisAvailable = preferLocalGeoIndex || neighbors != null;
+        if (neighbors == null) {
+            neighbors = shopSpatialIndex.radius(typeId, x, y, SystemConstants.NEARBY_SHOP_RADIUS_METERS, limit);
+        }
+        return new Nearby(neighbors, redisAvailable);
+    }
+
+    /**
+     * 名称索引已加载且关键字不为空时可以使用名称索引
+     */
+    public boolean useNameIndex(String name) {
+        return nameIndexEnabled && nameIndexLoaded && name != null && !name.trim().isEmpty();
+    }
+
+    public List<ShopNameIndex.Hit> searchName(String keyword, ShopNameIndex.Hit after, int limit) {
+        return shopNameIndex.search(keyword, after, limit);
+    }
+
+    /**
+     * 名称前缀补全，返回排名最高的店铺id
+     */
+    public List<Long> suggest(String prefix) {
+        return shopNameTrie.suggest(prefix, suggestTopK);
+    }
+
+    public int suggestTopK() {
+        return suggestTopK;
+    }
+
+    /**
+     * 写入一批店铺的坐标，用管道写入redis的GEO集合并更新本地坐标索引，GEOADD对已存在的店铺只更新坐标，可以重复执行
+     */
+    public void loadGeo(List<Shop> shops) {
+        shops.forEach(shop -> indexGeo(shop.getId(), shop));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Shop shop : shops) {
+                if (hasLocation(shop)) {
+                    conn.geoAdd(SHOP_GEO_KEY + shop.getTypeId(), new Point(shop.getX(), shop.getY()), shop.getId().toString());
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 写入一批店铺的名称、评分和销量到本地名称索引和前缀树
+     */
+    public void loadNames(List<Shop> shops) {
+        shops.forEach(shop -> indexName(shop.getId(), shop));
+    }
+
+    /**
+     * 名称全部加载完成后开始使用名称索引
+     */
+    public void markNameIndexLoaded() {
+        nameIndexLoaded = true;
+    }
+
+    /**
+     * 新增店铺后写入GEO集合和本地索引，并通知其它节点
+     */
+    public void add(Shop shop) {
+        if (hasLocation(shop)) {
+            stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + shop.getTypeId(),
+                    new Point(shop.getX(), shop.getY()), shop.getId().toString());
+        }
+        indexGeo(shop.getId(), shop);
+        indexName(shop.getId(), shop);
+        publish(shop);
+    }
+
+    /**
+     * 更新店铺后，类型或坐标变化时更新GEO集合和本地坐标索引，名称、评分或销量变化时更新名称索引，有变化时通知其它节点
+     * @param merged 更新后的完整店铺，未更新的字段沿用旧值
+     */
+    public void update(Shop old, Shop merged) {
+        Long id = old.getId();
+        boolean geoChanged = !Objects.equals(merged.getTypeId(), old.getTypeId())
+                || !Objects.equals(merged.getX(), old.getX()) || !Objects.equals(merged.getY(), old.getY());
+        if (geoChanged) {
+            String member = id.toString();
+            // 类型变化时从旧类型的集合中移除
+            if (old.getTypeId() != null && !old.getTypeId().equals(merged.getTypeId())) {
+                stringRedisTemplate.opsForGeo().remove(SHOP_GEO_KEY + old.getTypeId(), member);
+            }
+            if (hasLocation(merged)) {
+                stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + merged.getTypeId(),
+                        new Point(merged.getX(), merged.getY()), member);
+            }
+            indexGeo(id, merged);
+        }
+        boolean nameChanged = !Objects.equals(merged.getName(), old.getName())
+                || !Objects.equals(merged.getScore(), old.getScore()) || !Objects.equals(merged.getSold(), old.getSold());
+        if (nameChanged) {
+            indexName(id, merged);
+        }
+        if (geoChanged || nameChanged) {
+            publish(merged);
+        }
+    }
+
+    // 消息包含节点标识和索引用到的全部字段
+    private void publish(Shop shop) {
+        JSONObject body = JSONUtil.createObj()
+                .set("node", nodeId)
+                .set("id", shop.getId())
+                .set("typeId", shop.getTypeId())
+                .set("x", shop.getX())
+                .set("y", shop.getY())
+                .set("name", shop.getName())
+                .set("score", shop.getScore())
+                .set("sold", shop.getSold());
+        stringRedisTemplate.convertAndSend(SHOP_INDEX_CHANGED_CHANNEL, body.toString());
+    }
+
+    // 查询redis GEO中距离最近的limit个店铺，查询失败、超时或线程池已满时返回null
+    private List<ShopSpatialIndex.Neighbor> geoRadius(Integer typeId, double x, double y, int limit) {
+        GeoResults<RedisGeoCommands.GeoLocation<String>> results;
+        Future<GeoResults<RedisGeoCommands.GeoLocation<String>>> future = null;
+        try {
+            future = geoExecutor.submit(() -> stringRedisTemplate.opsForGeo().radius(
+                    SHOP_GEO_KEY + typeId,
+                    new Circle(new Point(x, y), new Distance(SystemConstants.NEARBY_SHOP_RADIUS_METERS)),
+                    RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs().includeDistance().sortAscending().limit(limit)));
+            results = future.get(geoRedisTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException | TimeoutException e) {
+            log.warn("redis GEO查询繁忙或超时，使用本地坐标索引，typeId：{}", typeId);
+            if (future != null) {
+                future.cancel(true);
+            }
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("redis GEO查询失败，使用本地坐标索引，typeId：{}", typeId, e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (results == null) {
+            return Collections.emptyList();
+        }
+        List<ShopSpatialIndex.Neighbor> neighbors = new ArrayList<>(results.getContent().size());
+        for (GeoResult<RedisGeoCommands.GeoLocation<String>> result : results) {
+            neighbors.add(new ShopSpatialIndex.Neighbor(
+                    Long.parseLong(result.getContent().getName()), result.getDistance().getValue()));
+        }
+        return neighbors;
+    }
+
+    private static boolean hasLocation(Shop shop) {
+        return shop.getTypeId() != null && shop.getX() != null && shop.getY() != null;
+    }
+
+    // 更新本地坐标索引，店铺没有坐标时从索引中移除
+    private void indexGeo(Long id, Shop shop) {
+        if (!hasLocation(shop)) {
+            shopSpatialIndex.remove(id);
+            return;
+        }
+        shopSpatialIndex.put(id, shop.getTypeId(), shop.getX(), shop.getY());
+    }
+
+    // 更新本地名称索引和前缀树，店铺没有名称时从索引中移除
+    private void indexName(Long id, Shop shop) {
+        if (shop.getName() == null) {
+            shopNameIndex.remove(id);
+            shopNameTrie.remove(id);
+            return;
+        }
+        int score = shop.getScore() == null ? 0 : shop.getScore();
+        int sold = shop.getSold() == null ? 0 : shop.getSold();
+        shopNameIndex.put(id, shop.getName(), score, sold);
+        shopNameTrie.put(id, shop.getName(), score, sold);
+    }
+
+    /**
+     * 附近店铺的查询结果
+     */
+    public static class Nearby {
+        // 按距离由近到远排序
+        private final List<ShopSpatialIndex.Neighbor> neighbors;
+        // redis是否可用，不可用时店铺详情直接查询数据库
+        private final boolean redisAvailable;
+
+        private Nearby(List<ShopSpatialIndex.Neighbor> neighbors, boolean redisAvailable) {
+            this.neighbors = neighbors;
+            this.redisAvailable = redisAvailable;
+        }
+
+        public List<ShopSpatialIndex.Neighbor> getNeighbors() {
+            return neighbors;
+        }
+
+        public boolean isRedisAvailable() {
+            return redisAvailable;
+        }
+    }
+}
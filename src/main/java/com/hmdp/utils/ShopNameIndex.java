@@ -0,0 +1,316 @@
+package com.hmdp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 店铺名称的进程内倒排索引
+ * <p>
+ * 按单字和相邻两个字建立倒排表，中文名称不需要分词。查询时对关键字的二元组求交集，再校验名称确实包含关键字。
+ * 每个店铺对应一个文档编号，倒排表中的文档编号递增，使用int数组保存；
+ * 店铺更新时旧文档标记删除并追加新文档，删除的文档过多时整体重建，内存占用与店铺数量成正比。
+ * 结果按匹配程度（完全匹配、前缀匹配、包含）、评分、销量排序。
+ */
+public class ShopNameIndex {
+
+    // 只索引名称的前64个字符
+    private static final int MAX_NAME_LENGTH = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int MATCH_EXACT = 2;
+    private static final int MATCH_PREFIX = 1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Integer, Postings> postings = new HashMap<>();
+    // 店铺id -> 文档编号
+    private Map<Long, Integer> docs = new HashMap<>();
+    // 文档表，下标为文档编号，删除的文档名称为null
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] popularity = new long[INITIAL_CAPACITY];
+    private int docCount;
+    private int deletedCount;
+
+    /**
+     * 写入或更新店铺名称
+     */
+    public void put(long id, String name, int score, int sold) {
+        String normalized = normalize(name);
+        lock.writeLock().lock();
+        try {
+            Integer old = docs.remove(id);
+            if (old != null) {
+                delete(old);
+            }
+            if (normalized.isEmpty()) {
+                return;
+            }
+            docs.put(id, append(id, normalized, popularity(score, sold)));
+            compactIfNecessary();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer old = docs.remove(id);
+            if (old != null) {
+                delete(old);
+                compactIfNecessary();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询名称包含关键字的店铺
+     * @param keyword 关键字，忽略大小写、空白和标点
+     * @param after   上一页的最后一条结果，为null时从第一条开始
+     * @param limit   最多返回的数量
+     * @return 按排序值倒序排列的店铺，排序值相同时按id倒序
+     */
+    public List<Hit> search(String keyword, Hit after, int limit) {
+        String query = normalize(keyword);
+        if (query.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            // 1.取出关键字每个二元组的倒排表，任意一个不存在时没有结果
+            List<Postings> lists = new ArrayList<>();
+            for (int gram : grams(query)) {
+                Postings list = postings.get(gram);
+                if (list == null) {
+                    return Collections.emptyList();
+                }
+                lists.add(list);
+            }
+            // 2.从最短的倒排表开始求交集，其它倒排表只向后跳跃查找
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            Postings shortest = lists.get(0);
+            int[] positions = new int[lists.size()];
+            PriorityQueue<Hit> top = new PriorityQueue<>(Math.min(limit, 64) + 1, HIT_ORDER);
+            for (int i = 0; i < shortest.size; i++) {
+                int doc = shortest.docs[i];
+                if (!containsAll(lists, positions, doc)) {
+                    continue;
+                }
+                // 3.校验名称包含关键字，同时排除已删除的文档
+                String name = names[doc];
+                if (name == null || (query.length() > 2 && !name.contains(query))) {
+                    continue;
+                }
+                int match = name.equals(query) ? MATCH_EXACT : name.startsWith(query) ? MATCH_PREFIX : 0;
+                long rank = ((long) match << 40) | popularity[doc];
+                if (after != null && compare(rank, ids[doc], after) >= 0) {
+                    continue;
+                }
+                // 4.小顶堆保留排序值最大的limit个结果
+                if (top.size() >= limit && compare(rank, ids[doc], top.peek()) <= 0) {
+                    continue;
+                }
+                top.offer(new Hit(ids[doc], rank));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(HIT_ORDER.reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int append(long id, String name, long rank) {
+        if (docCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            popularity = Arrays.copyOf(popularity, capacity);
+        }
+        int doc = docCount++;
+        ids[doc] = id;
+        names[doc] = name;
+        popularity[doc] = rank;
+        Set<Integer> grams = new LinkedHashSet<>();
+        for (int i = 0; i < name.length(); i++) {
+            grams.add(unigram(name.charAt(i)));
+            if (i + 1 < name.length()) {
+                grams.add(bigram(name.charAt(i), name.charAt(i + 1)));
+            }
+        }
+        for (int gram : grams) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+        }
+        return doc;
+    }
+
+    // 只标记删除，倒排表中的文档编号在重建时清理
+    private void delete(int doc) {
+        names[doc] = null;
+        deletedCount++;
+    }
+
+    // 删除的文档超过一半时按文档顺序重建，回收倒排表中的空间
+    private void compactIfNecessary() {
+        if (deletedCount <= INITIAL_CAPACITY || deletedCount * 2 < docCount) {
+            return;
+        }
+        long[] oldIds = ids;
+        String[] oldNames = names;
+        long[] oldPopularity = popularity;
+        int oldCount = docCount;
+        int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, oldCount - deletedCount)) * 2);
+        postings = new HashMap<>();
+        docs = new HashMap<>();
+        ids = new long[capacity];
+        names = new String[capacity];
+        popularity = new long[capacity];
+        docCount = 0;
+        deletedCount = 0;
+        for (int doc = 0; doc < oldCount; doc++) {
+            if (oldNames[doc] != null) {
+                docs.put(oldIds[doc], append(oldIds[doc], oldNames[doc], oldPopularity[doc]));
+            }
+        }
+        postings.values().forEach(Postings::trim);
+    }
+
+    // 判断其它倒排表是否都包含该文档，positions记录每个倒排表已经查找到的位置
+    private static boolean containsAll(List<Postings> lists, int[] positions, int doc) {
+        for (int i = 1; i < lists.size(); i++) {
+            Postings list = lists.get(i);
+            int pos = advance(list, positions[i], doc);
+            positions[i] = pos;
+            if (pos >= list.size || list.docs[pos] != doc) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 从from开始按1、2、4...的步长跳跃，再二分查找第一个不小于doc的位置
+    private static int advance(Postings list, int from, int doc) {
+        int[] docs = list.docs;
+        int size = list.size;
+        if (from >= size || docs[from] >= doc) {
+            return from;
+        }
+        int step = 1;
+        while (from + step < size && docs[from + step] < doc) {
+            step <<= 1;
+        }
+        int pos = Arrays.binarySearch(docs, from + (step >> 1) + 1, Math.min(from + step + 1, size), doc);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    private static int compare(long rank, long id, Hit hit) {
+        int c = Long.compare(rank, hit.rank);
+        return c != 0 ? c : Long.compare(id, hit.id);
+    }
+
+    // 关键字只有一个字时使用单字，否则使用全部二元组
+    private static Set<Integer> grams(String query) {
+        Set<Integer> grams = new LinkedHashSet<>();
+        if (query.length() == 1) {
+            grams.add(unigram(query.charAt(0)));
+            return grams;
+        }
+        for (int i = 0; i + 1 < query.length(); i++) {
+            grams.add(bigram(query.charAt(i), query.charAt(i + 1)));
+        }
+        return grams;
+    }
+
+    // 规范化后的字符不包含\0，单字的高16位为0，不会与二元组冲突
+    private static int unigram(char c) {
+        return c;
+    }
+
+    private static int bigram(char c1, char c2) {
+        return (c1 << 16) | c2;
+    }
+
+    // 评分占8位，销量占32位，匹配程度放在更高的位上
+    private static long popularity(int score, int sold) {
+        return ((long) Math.min(Math.max(score, 0), 255) << 32) | Math.max(sold, 0);
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(Math.min(name.length(), MAX_NAME_LENGTH));
+        for (int i = 0; i < name.length() && sb.length() < MAX_NAME_LENGTH; i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static final Comparator<Hit> HIT_ORDER =
+            Comparator.comparingLong(Hit::getRank).thenComparingLong(Hit::getId);
+
+    public static class Hit {
+        private final long id;
+        private final long rank;
+
+        public Hit(long id, long rank) {
+            this.id = id;
+            this.rank = rank;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * 排序值，越大越靠前
+         */
+        public long getRank() {
+            return rank;
+        }
+    }
+
+    private static class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size + Math.max(4, size >> 1));
+            }
+            docs[size++] = doc;
+        }
+
+        void trim() {
+            docs = Arrays.copyOf(docs, Math.max(size, 1));
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.hmdp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 店铺名称前缀补全使用的压缩前缀树
+ * <p>
+ * 只有一个子节点的路径合并为一条边，节点数量不超过名称数量的两倍。
+ * 每个节点保存子树中销量最高的k个店铺，查询时找到前缀所在的节点直接返回，不需要遍历子树。
+ * 写入时沿路径更新各节点的前k个店铺；删除时只有店铺在节点的前k个之中才需要用子节点重新计算。
+ */
+public class ShopNameTrie {
+
+    private static final char[] EMPTY_KEYS = new char[0];
+    private static final Node[] EMPTY_NODES = new Node[0];
+    private static final Entry[] EMPTY_ENTRIES = new Entry[0];
+
+    private final int topK;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node(EMPTY_KEYS);
+    // 店铺id -> 店铺在树中的名称和排序值
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    /**
+     * @param topK 每个节点保存的店铺数量，也是一次补全最多返回的数量
+     */
+    public ShopNameTrie(int topK) {
+        this.topK = topK;
+    }
+
+    /**
+     * 写入或更新店铺名称，按销量排序，销量相同时按评分排序
+     */
+    public void put(long id, String name, int score, int sold) {
+        String key = ShopNameIndex.normalize(name);
+        Entry entry = new Entry(id, key, ((long) Math.max(sold, 0) << 8) | Math.min(Math.max(score, 0), 255));
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.remove(id);
+            if (old != null) {
+                delete(old);
+            }
+            if (!key.isEmpty()) {
+                insert(entry);
+                entries.put(id, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.remove(id);
+            if (old != null) {
+                delete(old);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询名称以prefix开头的店铺
+     * @param limit 最多返回的数量，不超过topK
+     * @return 按销量倒序排列的店铺id
+     */
+    public List<Long> suggest(String prefix, int limit) {
+        String key = ShopNameIndex.normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            // 1.沿前缀向下查找，前缀可以在一条边的中间结束
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                node = node.child(key.charAt(i));
+                if (node == null) {
+                    return Collections.emptyList();
+                }
+                for (int j = 0; j < node.label.length && i < key.length(); j++, i++) {
+                    if (node.label[j] != key.charAt(i)) {
+                        return Collections.emptyList();
+                    }
+                }
+            }
+            // 2.节点保存的就是子树中排名最高的店铺
+            Entry[] top = node.top;
+            List<Long> ids = new ArrayList<>(Math.min(limit, top.length));
+            for (int j = 0; j < top.length && j < limit; j++) {
+                ids.add(top[j].id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(Entry entry) {
+        String key = entry.key;
+        Node node = root;
+        int i = 0;
+        while (true) {
+            node.top = offer(node.top, entry);
+            if (i == key.length()) {
+                node.terminals = append(node.terminals, entry);
+                return;
+            }
+            char c = key.charAt(i);
+            Node child = node.child(c);
+            if (child == null) {
+                // 没有匹配的边，剩余部分作为新的叶子节点
+                Node leaf = new Node(key.substring(i).toCharArray());
+                // 数组只会整体替换，不会原地修改，叶子节点的两个数组可以共用
+                leaf.terminals = new Entry[]{entry};
+                leaf.top = leaf.terminals;
+                node.addChild(leaf);
+                return;
+            }
+            int common = 0;
+            while (common < child.label.length && i + common < key.length() && child.label[common] == key.charAt(i + common)) {
+                common++;
+            }
+            if (common < child.label.length) {
+                // 名称在边的中间分叉，拆分出中间节点
+                Node mid = new Node(Arrays.copyOf(child.label, common));
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                mid.keys = new char[]{child.label[0]};
+                mid.children = new Node[]{child};
+                mid.top = child.top;
+                node.children[node.indexOf(c)] = mid;
+                child = mid;
+            }
+            i += common;
+            node = child;
+        }
+    }
+
+    private void delete(Entry entry) {
+        // 1.记录从根节点到名称结束节点的路径
+        String key = entry.key;
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        path.add(node);
+        while (i < key.length()) {
+            node = node.child(key.charAt(i));
+            i += node.label.length;
+            path.add(node);
+        }
+        node.terminals = without(node.terminals, entry);
+        // 2.从下往上重新计算前k个店铺，店铺不在某个节点的前k个之中时，上层节点也不受影响
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node current = path.get(depth);
+            if (!contains(current.top, entry)) {
+                break;
+            }
+            current.top = recompute(current);
+        }
+        // 3.清理空节点，合并只有一个子节点的节点
+        for (int depth = path.size() - 1; depth > 0; depth--) {
+            Node current = path.get(depth);
+            Node parent = path.get(depth - 1);
+            if (current.terminals.length == 0 && current.children.length == 0) {
+                parent.removeChild(current.label[0]);
+            } else if (current.terminals.length == 0 && current.children.length == 1) {
+                Node child = current.children[0];
+                char[] label = Arrays.copyOf(current.label, current.label.length + child.label.length);
+                System.arraycopy(child.label, 0, label, current.label.length, child.label.length);
+                child.label = label;
+                parent.children[parent.indexOf(label[0])] = child;
+            } else {
+                break;
+            }
+        }
+    }
+
+    // 节点的前k个店铺来自自身结束的名称和子节点的前k个
+    private Entry[] recompute(Node node) {
+        List<Entry> candidates = new ArrayList<>(Arrays.asList(node.terminals));
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        candidates.sort(Entry::compareDesc);
+        return candidates.subList(0, Math.min(topK, candidates.size())).toArray(EMPTY_ENTRIES);
+    }
+
+    // 按排序插入，超过k个时丢弃最后一个
+    private Entry[] offer(Entry[] top, Entry entry) {
+        int pos = top.length;
+        while (pos > 0 && entry.compareDesc(top[pos - 1]) < 0) {
+            pos--;
+        }
+        if (pos >= topK) {
+            return top;
+        }
+        int size = Math.min(top.length + 1, topK);
+        Entry[] result = new Entry[size];
+        System.arraycopy(top, 0, result, 0, pos);
+        result[pos] = entry;
+        System.arraycopy(top, pos, result, pos + 1, size - pos - 1);
+        return result;
+    }
+
+    private static Entry[] append(Entry[] entries, Entry entry) {
+        Entry[] result = Arrays.copyOf(entries, entries.length + 1);
+        result[entries.length] = entry;
+        return result;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        List<Entry> result = new ArrayList<>(Arrays.asList(entries));
+        result.remove(entry);
+        return result.toArray(EMPTY_ENTRIES);
+    }
+
+    private static boolean contains(Entry[] entries, Entry entry) {
+        for (Entry e : entries) {
+            if (e == entry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry {
+        final long id;
+        final String key;
+        final long rank;
+
+        Entry(long id, String key, long rank) {
+            this.id = id;
+            this.key = key;
+            this.rank = rank;
+        }
+
+        // 排序值大的在前，相同时id大的在前
+        int compareDesc(Entry other) {
+            int c = Long.compare(other.rank, rank);
+            return c != 0 ? c : Long.compare(other.id, id);
+        }
+    }
+
+    private static final class Node {
+        char[] label;
+        // 子节点按边的第一个字符排序
+        char[] keys = EMPTY_KEYS;
+        Node[] children = EMPTY_NODES;
+        // 名称在此结束的店铺
+        Entry[] terminals = EMPTY_ENTRIES;
+        // 子树中排名最高的k个店铺
+        Entry[] top = EMPTY_ENTRIES;
+
+        Node(char[] label) {
+            this.label = label;
+        }
+
+        Node child(char c) {
+            int i = indexOf(c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        int indexOf(char c) {
+            return Arrays.binarySearch(keys, c);
+        }
+
+        void addChild(Node child) {
+            int pos = -indexOf(child.label[0]) - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, pos);
+            System.arraycopy(children, 0, newChildren, 0, pos);
+            newKeys[pos] = child.label[0];
+            newChildren[pos] = child;
+            System.arraycopy(keys, pos, newKeys, pos + 1, keys.length - pos);
+            System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        void removeChild(char c) {
+            int pos = indexOf(c);
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, pos);
+            System.arraycopy(children, 0, newChildren, 0, pos);
+            System.arraycopy(keys, pos + 1, newKeys, pos, keys.length - pos - 1);
+            System.arraycopy(children, pos + 1, newChildren, pos, children.length - pos - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+    }
+}
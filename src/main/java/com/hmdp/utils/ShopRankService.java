@@ -0,0 +1,123 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.ScrollResult;
+import com.hmdp.entity.Shop;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 店铺排行，每个店铺类型的每个排行维度对应redis中的一个有序集合，member为店铺id，分值为该维度的数据
+ */
+@Component
+public class ShopRankService {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 用管道写入一批店铺在各个维度的排行，ZADD对已存在的店铺只更新分值，可以重复执行
+     */
+    public void addAll(List<Shop> shops) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            shops.forEach(shop -> add(conn, shop));
+            return null;
+        });
+    }
+
+    /**
+     * 写入新增店铺在各个维度的排行
+     */
+    public void add(Shop shop) {
+        addAll(Collections.singletonList(shop));
+    }
+
+    /**
+     * 更新店铺后，类型变化时从旧类型的排行中移除，分值变化时更新分值
+     * @param merged 更新后的完整店铺，未更新的字段沿用旧值
+     */
+    public void update(Shop old, Shop merged) {
+        boolean typeChanged = !Objects.equals(old.getTypeId(), merged.getTypeId());
+        List<ShopRankType> changed = Arrays.stream(ShopRankType.values())
+                .filter(rankType -> typeChanged || !Objects.equals(rankType.valueOf(old), rankType.valueOf(merged)))
+                .collect(Collectors.toList());
+        if (changed.isEmpty()) {
+            return;
+        }
+        String member = old.getId().toString();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (ShopRankType rankType : changed) {
+                if (typeChanged && old.getTypeId() != null) {
+                    conn.zRem(rankType.key(old.getTypeId()), member);
+                }
+                if (merged.getTypeId() != null) {
+                    Integer value = rankType.valueOf(merged);
+                    conn.zAdd(rankType.key(merged.getTypeId()), value == null ? 0 : value, member);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 按分值范围滚动查询一页排行，ZREVRANGEBYSCORE key max 0 LIMIT offset count
+     * @param max 上一页的最小分值，为空时从最高分开始
+     * @param offset 上一页中与最小分值相同的个数
+     * @return list为按排行排序的店铺id，没有数据时返回null
+     */
+    public ScrollResult query(ShopRankType rankType, Integer typeId, Long max, Integer offset) {
+        long maxScore = max == null ? Long.MAX_VALUE : max;
+        int skip = offset == null ? 0 : offset;
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().reverseRangeByScoreWithScores(
+                rankType.key(typeId.longValue()), 0, maxScore, skip, SystemConstants.DEFAULT_PAGE_SIZE);
+        if (tuples == null || tuples.isEmpty()) {
+            return null;
+        }
+        // 解析数据：shopId、最小分值、与最小分值相同的个数
+        List<Long> ids = new ArrayList<>(tuples.size());
+        // 从第一条数据的分值开始计数，分值可能为0，不能用0作为初始值
+        long minScore = tuples.iterator().next().getScore().longValue();
+        int os = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            ids.add(Long.valueOf(tuple.getValue()));
+            long score = tuple.getScore().longValue();
+            if (score == minScore) {
+                os++;
+            } else {
+                minScore = score;
+                os = 1;
+            }
+        }
+        // 最小分值与上一页相同时，跳过的个数要加上上一页的偏移量
+        os = minScore == maxScore ? os + skip : os;
+        ScrollResult r = new ScrollResult();
+        r.setList(ids);
+        r.setOffset(os);
+        r.setMinTime(minScore);
+        return r;
+    }
+
+    // 写入店铺在各个维度的排行
+    private void add(StringRedisConnection conn, Shop shop) {
+        if (shop.getTypeId() == null) {
+            return;
+        }
+        for (ShopRankType rankType : ShopRankType.values()) {
+            Integer value = rankType.valueOf(shop);
+            conn.zAdd(rankType.key(shop.getTypeId()), value == null ? 0 : value, shop.getId().toString());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+
+import java.util.function.Function;
+
+/**
+ * 店铺排行的维度，每个店铺类型的每个维度对应redis中的一个有序集合
+ */
+public enum ShopRankType {
+    /**
+     * 按销量排序
+     */
+    SOLD(Shop::getSold),
+    /**
+     * 按评分排序
+     */
+    SCORE(Shop::getScore),
+    /**
+     * 按评论数量排序
+     */
+    COMMENTS(Shop::getComments);
+
+    private final Function<Shop, Integer> getter;
+
+    ShopRankType(Function<Shop, Integer> getter) {
+        this.getter = getter;
+    }
+
+    /**
+     * 店铺在该维度上的分值，没有数据时为null
+     */
+    public Integer valueOf(Shop shop) {
+        return getter.apply(shop);
+    }
+
+    public String key(Long typeId) {
+        return RedisConstants.SHOP_RANK_KEY + name().toLowerCase() + ":" + typeId;
+    }
+
+    /**
+     * 根据请求参数解析排序维度，忽略大小写
+     * @return 不支持的维度返回null
+     */
+    public static ShopRankType of(String name) {
+        for (ShopRankType type : values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
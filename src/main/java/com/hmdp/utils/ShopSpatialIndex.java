@@ -0,0 +1,299 @@
+package com.hmdp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的店铺坐标索引，按店铺类型划分，每个类型一个经纬度网格
+ * <p>
+ * 网格按固定的经纬度间隔划分单元格，查询时只遍历与查询范围相交的单元格。
+ * 单元格内的坐标保存在数组中，读操作不加锁；写操作在单元格上加锁，追加时复用数组，删除时复制数组后整体替换。
+ * 距离计算与redis GEO使用相同的公式和地球半径，两者返回的距离一致。
+ */
+public class ShopSpatialIndex {
+
+    // 与redis GEO相同的地球半径
+    private static final double EARTH_RADIUS_METERS = 6372797.560856;
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180;
+
+    private final double cellDegrees;
+
+    // 店铺类型 -> 单元格坐标 -> 单元格
+    private final Map<Long, Map<Long, Cell>> types = new ConcurrentHashMap<>();
+    // 店铺id -> 所在的类型和单元格，用于更新和删除
+    private final Map<Long, Location> locations = new ConcurrentHashMap<>();
+
+    /**
+     * @param cellDegrees 单元格的经纬度间隔，与常用的查询半径相当时查询最快
+     */
+    public ShopSpatialIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+
+    /**
+     * 写入或更新店铺坐标，类型或坐标变化时从原来的单元格中移除
+     */
+    public void put(long id, long typeId, double x, double y) {
+        long cellKey = cellKey(cellIndex(x), cellIndex(y));
+        locations.compute(id, (k, old) -> {
+            if (old != null) {
+                removeFromCell(old, id);
+            }
+            types.computeIfAbsent(typeId, t -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(cellKey, c -> new Cell())
+                    .add(id, x, y);
+            return new Location(typeId, cellKey);
+        });
+    }
+
+    public void remove(long id) {
+        locations.computeIfPresent(id, (k, old) -> {
+            removeFromCell(old, id);
+            return null;
+        });
+    }
+
+    public int size() {
+        return locations.size();
+    }
+
+    /**
+     * 查询指定类型在半径范围内的店铺
+     * @param radiusMeters 查询半径，单位米
+     * @param limit        最多返回的数量
+     * @return 按距离由近到远排序的店铺
+     */
+    public List<Neighbor> radius(long typeId, double x, double y, double radiusMeters, int limit) {
+        Map<Long, Cell> cells = types.get(typeId);
+        if (cells == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        // 1.计算查询范围对应的经纬度，经度间隔随纬度升高而变大
+        double latDegrees = radiusMeters / METERS_PER_DEGREE;
+        double cosLat = Math.cos(Math.toRadians(y));
+        double lngDegrees = cosLat < 1e-6 ? 360 : Math.min(360, latDegrees / cosLat);
+        int minCx = cellIndex(x - lngDegrees), maxCx = cellIndex(x + lngDegrees);
+        int minCy = cellIndex(y - latDegrees), maxCy = cellIndex(y + latDegrees);
+
+        // 2.比较半正矢值而不是距离，只对命中的店铺计算距离
+        double sinHalf = Math.sin(radiusMeters / EARTH_RADIUS_METERS / 2);
+        double maxHav = sinHalf * sinHalf;
+        Query query = new Query(x, y, maxHav, limit);
+        long rangeCells = (long) (maxCx - minCx + 1) * (maxCy - minCy + 1);
+        if (rangeCells > cells.size()) {
+            // 查询范围比已有的单元格多，直接遍历全部单元格
+            cells.values().forEach(query::scan);
+        } else {
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                for (int cy = minCy; cy <= maxCy; cy++) {
+                    Cell cell = cells.get(cellKey(cx, cy));
+                    if (cell != null) {
+                        query.scan(cell);
+                    }
+                }
+            }
+        }
+        return query.result();
+    }
+
+    /**
+     * 查询指定类型最近的k个店铺
+     * <p>
+     * 从一个单元格大小的半径开始，结果不足k个时半径加倍，直到达到最大半径。
+     * @param maxRadiusMeters 最大查询半径，单位米
+     * @return 按距离由近到远排序的店铺
+     */
+    public List<Neighbor> nearest(long typeId, double x, double y, int k, double maxRadiusMeters) {
+        double radius = Math.min(cellDegrees * METERS_PER_DEGREE, maxRadiusMeters);
+        while (true) {
+            List<Neighbor> neighbors = radius(typeId, x, y, radius, k);
+            if (neighbors.size() >= k || radius >= maxRadiusMeters) {
+                return neighbors;
+            }
+            radius = Math.min(radius * 2, maxRadiusMeters);
+        }
+    }
+
+    /**
+     * 两个坐标之间的球面距离，单位米
+     */
+    public static double distance(double x1, double y1, double x2, double y2) {
+        double lat1 = Math.toRadians(y1);
+        double lat2 = Math.toRadians(y2);
+        double u = Math.sin((lat2 - lat1) / 2);
+        double v = Math.sin(Math.toRadians(x2 - x1) / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(u * u + Math.cos(lat1) * Math.cos(lat2) * v * v));
+    }
+
+    private void removeFromCell(Location location, long id) {
+        Map<Long, Cell> cells = types.get(location.typeId);
+        Cell cell = cells == null ? null : cells.get(location.cellKey);
+        if (cell != null) {
+            // 空的单元格保留，避免与并发的写入竞争
+            cell.remove(id);
+        }
+    }
+
+    private int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    public static class Neighbor {
+        private final long id;
+        private final double distance;
+
+        public Neighbor(long id, double distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * 与查询坐标的距离，单位米
+         */
+        public double getDistance() {
+            return distance;
+        }
+    }
+
+    private static class Location {
+        final long typeId;
+        final long cellKey;
+
+        Location(long typeId, long cellKey) {
+            this.typeId = typeId;
+            this.cellKey = cellKey;
+        }
+    }
+
+    // 单元格内的坐标，size之前的元素不会再被修改，读操作取到points之后不需要加锁
+    private static class Points {
+        static final Points EMPTY = new Points(new long[0], new double[0], new double[0], new double[0], 0);
+
+        final long[] ids;
+        final double[] xs;
+        // 纬度的弧度和余弦，查询时不需要重复计算
+        final double[] lats;
+        final double[] cosLats;
+        final int size;
+
+        Points(long[] ids, double[] xs, double[] lats, double[] cosLats, int size) {
+            this.ids = ids;
+            this.xs = xs;
+            this.lats = lats;
+            this.cosLats = cosLats;
+            this.size = size;
+        }
+    }
+
+    private static class Cell {
+        volatile Points points = Points.EMPTY;
+
+        synchronized void add(long id, double x, double y) {
+            Points p = points;
+            long[] ids = p.ids;
+            double[] xs = p.xs, lats = p.lats, cosLats = p.cosLats;
+            if (p.size == ids.length) {
+                int capacity = Math.max(4, p.size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                lats = Arrays.copyOf(lats, capacity);
+                cosLats = Arrays.copyOf(cosLats, capacity);
+            }
+            double lat = Math.toRadians(y);
+            ids[p.size] = id;
+            xs[p.size] = x;
+            lats[p.size] = lat;
+            cosLats[p.size] = Math.cos(lat);
+            points = new Points(ids, xs, lats, cosLats, p.size + 1);
+        }
+
+        synchronized void remove(long id) {
+            Points p = points;
+            for (int i = 0; i < p.size; i++) {
+                if (p.ids[i] != id) {
+                    continue;
+                }
+                // 已发布的元素不能原地修改，复制剩余元素到新数组
+                int capacity = Math.max(4, p.size);
+                long[] ids = new long[capacity];
+                double[] xs = new double[capacity], lats = new double[capacity], cosLats = new double[capacity];
+                System.arraycopy(p.ids, 0, ids, 0, i);
+                System.arraycopy(p.xs, 0, xs, 0, i);
+                System.arraycopy(p.lats, 0, lats, 0, i);
+                System.arraycopy(p.cosLats, 0, cosLats, 0, i);
+                int tail = p.size - i - 1;
+                System.arraycopy(p.ids, i + 1, ids, i, tail);
+                System.arraycopy(p.xs, i + 1, xs, i, tail);
+                System.arraycopy(p.lats, i + 1, lats, i, tail);
+                System.arraycopy(p.cosLats, i + 1, cosLats, i, tail);
+                points = new Points(ids, xs, lats, cosLats, p.size - 1);
+                return;
+            }
+        }
+    }
+
+    // 一次查询的状态，用大顶堆保留距离最近的limit个结果
+    private static class Query {
+        final double x;
+        final double lat;
+        final double cosLat;
+        final double maxHav;
+        final int limit;
+        // 堆中保存id和半正矢值的bits
+        final PriorityQueue<long[]> heap;
+        double worstHav = Double.MAX_VALUE;
+
+        Query(double x, double y, double maxHav, int limit) {
+            this.x = x;
+            this.lat = Math.toRadians(y);
+            this.cosLat = Math.cos(lat);
+            this.maxHav = maxHav;
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 64) + 1,
+                    Comparator.comparingDouble((long[] e) -> Double.longBitsToDouble(e[1])).reversed());
+        }
+
+        void scan(Cell cell) {
+            Points p = cell.points;
+            for (int i = 0; i < p.size; i++) {
+                double u = Math.sin((p.lats[i] - lat) / 2);
+                double v = Math.sin(Math.toRadians(p.xs[i] - x) / 2);
+                double hav = u * u + cosLat * p.cosLats[i] * v * v;
+                if (hav > maxHav || (heap.size() >= limit && hav >= worstHav)) {
+                    continue;
+                }
+                heap.offer(new long[]{p.ids[i], Double.doubleToLongBits(hav)});
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+                if (heap.size() >= limit) {
+                    worstHav = Double.longBitsToDouble(heap.peek()[1]);
+                }
+            }
+        }
+
+        List<Neighbor> result() {
+            List<Neighbor> neighbors = new ArrayList<>(heap.size());
+            for (long[] e : heap) {
+                double hav = Double.longBitsToDouble(e[1]);
+                neighbors.add(new Neighbor(e[0], 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(Math.min(1, hav)))));
+            }
+            neighbors.sort(Comparator.comparingDouble(Neighbor::getDistance));
+            return neighbors;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.hmdp.utils;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.hmdp.entity.ShopType;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 店铺类型列表的不可变快照
+ * <p>
+ * 创建时一次性生成响应的JSON字节和ETag，请求时直接写出，不需要再次解析和序列化。
+ */
+@Getter
+public class ShopTypeSnapshot {
+
+    // 快照的版本号，每次重建加1
+    private final long version;
+    private final List<ShopType> types;
+    // 完整的响应内容，与Result.ok(types)序列化的结果一致
+    private final byte[] body;
+    // 响应内容的md5，带双引号
+    private final String etag;
+
+    public ShopTypeSnapshot(long version, List<ShopType> types, byte[] body) {
+        this.version = version;
+        this.types = Collections.unmodifiableList(types);
+        this.body = body;
+        this.etag = "\"" + DigestUtil.md5Hex(body) + "\"";
+    }
+}
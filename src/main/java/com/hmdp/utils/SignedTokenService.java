@@ -0,0 +1,310 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_REVOKED_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_TOKEN_REVOKE_CHANNEL;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
+
+/**
+ * 签名的登录token，token中包含用户信息和过期时间，校验时只需要计算HMAC，不访问redis
+ * <p>
+ * token格式为 base64url(用户信息).base64url(签名)，签名为HMAC-SHA256的前16字节。
+ * 登录时生成随机的会话id写入token，剩余时间不足时签发同一会话id的新token替换，实现滑动续期；
+ * 同一会话在续期间隔内只签发一次，之后仍使用旧token的请求返回同一个新token。
+ * 登出的会话记入撤销名单：redis的zset保存会话id和该会话所有token的最晚过期时间，各节点通过频道同步到本地，
+ * 并定期从redis重新加载，错过频道消息的节点最迟在一个同步间隔后拒绝已撤销的token；
+ * 校验时只查本地名单，名单中的记录在过期后清理，名单大小只与有效期内登出的数量有关。
+ * <p>
+ * 密钥通过环境变量 HMDP_LOGIN_SIGNING_SECRET 配置，所有节点必须相同；使用签名token时未配置密钥无法启动，
+ * 使用redis token时未配置密钥，所有签名token都校验失败。
+ */
+@Slf4j
+@Component
+public class SignedTokenService {
+
+    private static final byte VERSION = 2;
+    private static final int RENEWED_CACHE_SIZE = 10000;
+    private static final int SIGNATURE_LENGTH = 16;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final StringRedisTemplate stringRedisTemplate;
+    // 未配置密钥时为null
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+    private final long ttlSeconds;
+    // 剩余时间不超过该值时签发新token
+    private final long renewBelowSeconds;
+
+    // 会话id -> 该会话所有token的最晚过期时间（秒）
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    // 会话id -> 续期间隔内已签发的新token
+    private final LRUCache<Long, String> renewed;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    public SignedTokenService(StringRedisTemplate stringRedisTemplate,
+                              @Value("${hmdp.login.signing-secret:}") String secret,
+                              @Value("${hmdp.login.token-mode:redis}") String tokenMode,
+                              @Value("${hmdp.login.refresh-ratio:0.5}") double refreshRatio,
+                              @Value("${hmdp.login.renew-interval-seconds:60}") long renewIntervalSeconds) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        if (StrUtil.isBlank(secret)) {
+            // 各节点的随机密钥互不相同，签发的token在其它节点和重启后都无法校验，因此不使用随机密钥
+            if ("signed".equalsIgnoreCase(tokenMode)) {
+                throw new IllegalStateException("使用签名token时必须通过环境变量HMDP_LOGIN_SIGNING_SECRET配置签名密钥");
+            }
+            this.key = null;
+        } else {
+            this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        }
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.ttlSeconds = LOGIN_USER_TTL;
+        this.renewBelowSeconds = (long) (ttlSeconds * refreshRatio);
+        this.renewed = CacheUtil.newLRUCache(RENEWED_CACHE_SIZE, TimeUnit.SECONDS.toMillis(renewIntervalSeconds));
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":");
+            onRevoke(parts[0], Long.parseLong(parts[1]));
+        }, new ChannelTopic(LOGIN_TOKEN_REVOKE_CHANNEL));
+        // 加载启动前撤销的token
+        resyncRevoked();
+    }
+
+    /**
+     * 定期清理redis中已过期的撤销记录，并重新加载撤销名单，补上错过的频道消息
+     */
+    @Scheduled(fixedDelayString = "${hmdp.login.revoked-resync-millis:30000}")
+    public void resyncRevoked() {
+        try {
+            loadRevoked();
+        } catch (Exception e) {
+            log.error("加载token撤销名单失败", e);
+        }
+    }
+
+    /**
+     * 判断是否为签名token，随机生成的token不包含'.'
+     */
+    public static boolean isSigned(String token) {
+        return token.indexOf('.') > 0;
+    }
+
+    /**
+     * 登录时签发新token，生成新的会话id，有效期与redis中的登录态相同
+     */
+    public String issue(UserDTO user) {
+        return issue(user, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * 剩余时间不足时签发同一会话的新token，续期间隔内重复调用返回同一个token
+     * @return 新token，不需要续期时返回null
+     */
+    public String renew(Claims claims) {
+        if (!shouldRenew(claims)) {
+            return null;
+        }
+        return renewed.get(claims.sessionId, false, () -> issue(claims.user, claims.sessionId));
+    }
+
+    private String issue(UserDTO user, long sessionId) {
+        if (key == null) {
+            throw new IllegalStateException("未配置签名密钥，不能签发签名token");
+        }
+        long expireAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + ttlSeconds;
+        byte[] payload = encode(user, sessionId, expireAt);
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * 校验签名、过期时间和撤销名单
+     * @return 校验通过时返回token中的信息，否则返回null
+     */
+    public Claims verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0 || key == null) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // 1.常量时间比较签名
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+        // 2.解析用户信息，检查过期时间
+        Claims claims = decode(payload);
+        if (claims == null || claims.expireAt <= TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())) {
+            return null;
+        }
+        // 3.检查撤销名单
+        if (!revoked.isEmpty() && revoked.containsKey(Long.toHexString(claims.sessionId))) {
+            return null;
+        }
+        return claims;
+    }
+
+    /**
+     * 剩余时间不足时需要签发新token
+     */
+    public boolean shouldRenew(Claims claims) {
+        return claims.expireAt - TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) <= renewBelowSeconds;
+    }
+
+    /**
+     * 撤销token所属的会话，续期前后的token全部失效，写入redis的撤销名单并通知其它节点
+     */
+    public void revoke(String token) {
+        Claims claims = verify(token);
+        if (claims == null) {
+            return;
+        }
+        // 会话中已签发的token最晚在此刻加上有效期后过期
+        String sessionId = Long.toHexString(claims.sessionId);
+        long expireAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + ttlSeconds;
+        stringRedisTemplate.opsForZSet().add(LOGIN_REVOKED_KEY, sessionId, expireAt);
+        onRevoke(sessionId, expireAt);
+        stringRedisTemplate.convertAndSend(LOGIN_TOKEN_REVOKE_CHANNEL, sessionId + ":" + expireAt);
+    }
+
+    void onRevoke(String sessionId, long expireAt) {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        // 顺便清理已过期的记录，过期的token不需要撤销名单也会校验失败
+        revoked.values().removeIf(exp -> exp <= now);
+        if (expireAt > now) {
+            revoked.put(sessionId, expireAt);
+        }
+    }
+
+    private void loadRevoked() {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        stringRedisTemplate.opsForZSet().removeRangeByScore(LOGIN_REVOKED_KEY, 0, now);
+        Set<ZSetOperations.TypedTuple<String>> tuples =
+                stringRedisTemplate.opsForZSet().rangeByScoreWithScores(LOGIN_REVOKED_KEY, now, Double.MAX_VALUE);
+        if (tuples == null) {
+            return;
+        }
+        // 只增加不删除，加载期间通过频道收到的撤销记录不会丢失
+        revoked.values().removeIf(exp -> exp <= now);
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            if (tuple.getValue() != null && tuple.getScore() != null) {
+                revoked.put(tuple.getValue(), tuple.getScore().longValue());
+            }
+        }
+        log.debug("加载token撤销名单完成，数量：{}", revoked.size());
+    }
+
+    private byte[] sign(byte[] payload) {
+        Mac mac = macs.get();
+        return Arrays.copyOf(mac.doFinal(payload), SIGNATURE_LENGTH);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("初始化HMAC失败", e);
+        }
+    }
+
+    // 版本号、用户id、会话id、过期时间、昵称、头像
+    private static byte[] encode(UserDTO user, long sessionId, long expireAt) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(user.getId());
+            out.writeLong(sessionId);
+            out.writeInt((int) expireAt);
+            out.writeUTF(StrUtil.nullToEmpty(user.getNickName()));
+            out.writeUTF(StrUtil.nullToEmpty(user.getIcon()));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Claims decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (in.readByte() != VERSION) {
+                return null;
+            }
+            UserDTO user = new UserDTO();
+            user.setId(in.readLong());
+            long sessionId = in.readLong();
+            long expireAt = Integer.toUnsignedLong(in.readInt());
+            user.setNickName(StrUtil.emptyToNull(in.readUTF()));
+            user.setIcon(StrUtil.emptyToNull(in.readUTF()));
+            return new Claims(user, sessionId, expireAt);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static class Claims {
+        private final UserDTO user;
+        // 会话id，登录时生成，续期时不变
+        private final long sessionId;
+        // 过期时间，单位秒
+        private final long expireAt;
+
+        private Claims(UserDTO user, long sessionId, long expireAt) {
+            this.user = user;
+            this.sessionId = sessionId;
+            this.expireAt = expireAt;
+        }
+
+        public UserDTO getUser() {
+            return user;
+        }
+
+        public long getExpireAt() {
+            return expireAt;
+        }
+    }
+}
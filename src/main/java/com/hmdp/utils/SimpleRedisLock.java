@@ -0,0 +1,91 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于redis的分布式锁，通过 {@link RedisLockClient#getLock(String)} 获取
+ * <p>
+ * 锁保存为hash结构：持有者标识 -> 重入次数，持有者标识由节点id和线程id组成，获取、释放、续期都通过lua脚本原子执行，
+ * 只有持有者才能释放锁。获取锁时记录持有者标识，释放时使用记录的标识，因此可以在其它线程中释放，
+ * 但同一个锁对象不能同时被多个线程使用。
+ */
+public class SimpleRedisLock implements ILock {
+
+    private final String key;
+    private final boolean reentrant;
+    private final RedisLockClient client;
+
+    // 本次获取锁使用的持有者标识
+    private volatile String owner;
+    // 是否由看门狗续期
+    private volatile boolean watchdog;
+
+    SimpleRedisLock(String key, boolean reentrant, RedisLockClient client) {
+        this.key = key;
+        this.reentrant = reentrant;
+        this.client = client;
+    }
+
+    @Override
+    public boolean tryLock() {
+        return tryAcquire(-1) == null;
+    }
+
+    @Override
+    public boolean tryLock(long waitTime, TimeUnit unit) {
+        return tryLock(waitTime, -1, unit);
+    }
+
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) {
+        long leaseMillis = leaseTime < 0 ? -1 : unit.toMillis(leaseTime);
+        long deadline = System.currentTimeMillis() + unit.toMillis(waitTime);
+        while (true) {
+            // 1.先登记等待，再尝试获取锁，避免错过获取失败与开始等待之间的释放通知
+            CompletableFuture<Void> released = client.lockNotifier().register(key);
+            Long ttl = tryAcquire(leaseMillis);
+            if (ttl == null) {
+                client.lockNotifier().cancel(key, released);
+                return true;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                client.lockNotifier().cancel(key, released);
+                return false;
+            }
+            // 2.等待锁释放通知，最多等到锁过期，防止持有者宕机时错过通知
+            client.lockNotifier().await(key, released, ttl > 0 ? Math.min(ttl, remaining) : remaining);
+        }
+    }
+
+    // 获取成功返回null，失败返回锁的剩余有效期毫秒
+    private Long tryAcquire(long leaseMillis) {
+        String token = client.ownerToken();
+        Long ttl = client.acquire(key, token, leaseMillis, reentrant);
+        if (ttl == null) {
+            owner = token;
+            if (leaseMillis < 0) {
+                watchdog = true;
+                client.scheduleRenewal(key, token);
+            }
+        }
+        return ttl;
+    }
+
+    @Override
+    public void unlock() {
+        String token = owner;
+        if (token == null) {
+            return;
+        }
+        if (client.release(key, token) && watchdog) {
+            watchdog = false;
+            client.cancelRenewal(key, token);
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
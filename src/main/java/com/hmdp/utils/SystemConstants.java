@@ -5,4 +5,8 @@ public class SystemConstants {
     public static final String USER_NICK_NAME_PREFIX = "user_";
     public static final int DEFAULT_PAGE_SIZE = 5;
     public static final int MAX_PAGE_SIZE = 10;
+    public static final int MAX_BATCH_SIZE = 100;
+    // 签名token续期后，新token通过该响应头返回
+    public static final String RENEWED_TOKEN_HEADER = "x-renewed-token";
+    public static final double NEARBY_SHOP_RADIUS_METERS = 5000;
 }
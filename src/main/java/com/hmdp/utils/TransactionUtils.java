@@ -0,0 +1,27 @@
+package com.hmdp.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务相关的工具方法
+ */
+public class TransactionUtils {
+
+    /**
+     * 在当前事务提交后执行，事务回滚时不执行；没有事务时立即执行
+     * 用于删除缓存、发布变更通知等需要其它节点读到已提交数据的操作
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 登录态与redis数据之间的转换，逐个字段读写，不使用反射
+ * <p>
+ * 哈希格式的字段名与 BeanUtil.beanToMap 生成的一致，新旧代码写入的登录态可以互相读取。为null的字段不写入。
+ * 紧凑格式为一个字符串 用户id[\t昵称]，昵称为null时不写分隔符；头像按用户id单独保存，同一用户的多个登录态共用。
+ */
+public final class UserHashCodec {
+
+    static final String ID = "id";
+    static final String NICK_NAME = "nickName";
+    static final String ICON = "icon";
+
+    private UserHashCodec() {
+    }
+
+    public static Map<String, String> encode(UserDTO user) {
+        // 3个字段，容量4时不会扩容
+        Map<String, String> hash = new HashMap<>(4);
+        if (user.getId() != null) {
+            hash.put(ID, user.getId().toString());
+        }
+        if (user.getNickName() != null) {
+            hash.put(NICK_NAME, user.getNickName());
+        }
+        if (user.getIcon() != null) {
+            hash.put(ICON, user.getIcon());
+        }
+        return hash;
+    }
+
+    /**
+     * 紧凑格式，不包含头像
+     */
+    public static String pack(UserDTO user) {
+        return user.getNickName() == null ? user.getId().toString() : user.getId() + "\t" + user.getNickName();
+    }
+
+    /**
+     * @param packed 紧凑格式的登录态
+     * @param icon   按用户id保存的头像，可以为null
+     */
+    public static UserDTO unpack(String packed, String icon) {
+        UserDTO user = new UserDTO();
+        int sep = packed.indexOf('\t');
+        if (sep < 0) {
+            user.setId(Long.valueOf(packed));
+        } else {
+            user.setId(Long.valueOf(packed.substring(0, sep)));
+            user.setNickName(packed.substring(sep + 1));
+        }
+        user.setIcon(icon);
+        return user;
+    }
+
+    /**
+     * @param hash redis中的哈希，为空时返回null
+     */
+    public static UserDTO decode(Map<?, ?> hash) {
+        if (hash == null || hash.isEmpty()) {
+            return null;
+        }
+        UserDTO user = new UserDTO();
+        Object id = hash.get(ID);
+        if (id != null) {
+            user.setId(Long.valueOf(id.toString()));
+        }
+        Object nickName = hash.get(NICK_NAME);
+        if (nickName != null) {
+            user.setNickName(nickName.toString());
+        }
+        Object icon = hash.get(ICON);
+        if (icon != null) {
+            user.setIcon(icon.toString());
+        }
+        return user;
+    }
+}
@@ -0,0 +1,20 @@
+-- 验证码登录，KEYS[1]：验证码的key，KEYS[2]：手机号对应用户的缓存，KEYS[3]：登录态的key
+-- ARGV[1]：提交的验证码，ARGV[2]：登录态的有效期毫秒，为0时不写入登录态，ARGV[3]：头像key的前缀，ARGV[4]：头像的有效期毫秒
+-- 返回 {0}：验证码错误；{1}：验证码正确但用户未缓存；{2, 用户id[\t昵称], 头像}：验证码正确，已写入登录态并延长头像的有效期
+if redis.call('get', KEYS[1]) ~= ARGV[1] then
+    return {0}
+end
+-- 验证码只能使用一次
+redis.call('del', KEYS[1])
+local user = redis.call('get', KEYS[2])
+if not user then
+    return {1}
+end
+if tonumber(ARGV[2]) > 0 then
+    redis.call('set', KEYS[3], user, 'px', ARGV[2])
+end
+local sep = string.find(user, '\t', 1, true)
+local id = sep and string.sub(user, 1, sep - 1) or user
+local iconKey = ARGV[3] .. id
+redis.call('pexpire', iconKey, ARGV[4])
+return {2, user, redis.call('get', iconKey)}
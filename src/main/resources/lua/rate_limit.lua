@@ -0,0 +1,15 @@
+-- 滑动窗口限流，KEYS[1]：计数的key，ARGV[1]：窗口长度毫秒，ARGV[2]：窗口内允许的请求数，ARGV[3]：本次请求的唯一标识
+-- 通过返回0，被限流返回窗口内最早的请求移出窗口前还需等待的毫秒数
+-- 使用redis服务器的时间，所有节点共用同一个时钟，节点之间的时钟偏差不影响窗口
+redis.replicate_commands()
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local window = tonumber(ARGV[1])
+redis.call('zremrangebyscore', KEYS[1], 0, now - window)
+if redis.call('zcard', KEYS[1]) < tonumber(ARGV[2]) then
+    redis.call('zadd', KEYS[1], now, ARGV[3])
+    redis.call('pexpire', KEYS[1], window)
+    return 0
+end
+local oldest = redis.call('zrange', KEYS[1], 0, 0, 'withscores')
+return math.max(1, tonumber(oldest[2]) + window - now)
@@ -0,0 +1,7 @@
+-- 锁续期，KEYS[1]：锁的key，ARGV[1]：持有者标识，ARGV[2]：租期毫秒
+-- 仍是锁的持有者时续期并返回1，否则返回0
+if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 1
+end
+return 0
@@ -0,0 +1,19 @@
+-- 读取登录态，兼容紧凑格式和哈希格式，KEYS[1]：登录态的key，ARGV[1]：头像key的前缀，加上用户id为头像的key
+-- 返回 {格式, 剩余有效期毫秒, 数据...}
+-- 格式0：不存在；1：紧凑格式，数据为 用户id[\t昵称] 和头像（没有时为nil）；2：哈希格式，数据为哈希的字段和值
+local t = redis.call('type', KEYS[1])['ok']
+if t == 'string' then
+    local value = redis.call('get', KEYS[1])
+    local sep = string.find(value, '\t', 1, true)
+    local id = sep and string.sub(value, 1, sep - 1) or value
+    return {1, redis.call('pttl', KEYS[1]), value, redis.call('get', ARGV[1] .. id)}
+end
+if t == 'hash' then
+    local result = {2, redis.call('pttl', KEYS[1])}
+    local fields = redis.call('hgetall', KEYS[1])
+    for i = 1, #fields do
+        result[#result + 1] = fields[i]
+    end
+    return result
+end
+return {0, -2}
@@ -0,0 +1,12 @@
+-- 释放锁，KEYS[1]：锁的key，ARGV[1]：持有者标识，ARGV[2]：租期毫秒，ARGV[3]：锁释放通知的频道
+-- 不是锁的持有者返回nil，重入次数减一后仍持有返回0，完全释放返回1并广播锁已释放
+if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then
+    return nil
+end
+if redis.call('hincrby', KEYS[1], ARGV[1], -1) > 0 then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 0
+end
+redis.call('del', KEYS[1])
+redis.call('publish', ARGV[3], KEYS[1])
+return 1
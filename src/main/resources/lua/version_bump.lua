@@ -0,0 +1,6 @@
+-- 增加版本号，KEYS[1]：版本号的key，ARGV[1]：当前时间毫秒
+-- 版本号不存在时（被淘汰）先以当前时间初始化再加1，不会从1开始重复之前发出的ETag
+if redis.call('exists', KEYS[1]) == 0 then
+    redis.call('set', KEYS[1], ARGV[1])
+end
+return redis.call('incr', KEYS[1])
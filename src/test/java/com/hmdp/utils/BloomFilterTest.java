@@ -0,0 +1,32 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+public class BloomFilterTest {
+
+    @Test
+    void noFalseNegativesAndBoundedFalsePositives() {
+        int n = 100_000;
+        double fpp = 0.01;
+        BloomFilter filter = new BloomFilter(n, fpp);
+        for (long id = 1; id <= n; id++) {
+            filter.put(id);
+        }
+        for (long id = 1; id <= n; id++) {
+            assertTrue(filter.mightContain(id));
+        }
+        int falsePositives = 0;
+        for (long id = n + 1; id <= 2L * n; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / n;
+        log.info("bits={} hashes={} falsePositiveRate={}", filter.bitSize(), filter.hashFunctions(), rate);
+        assertTrue(rate < fpp * 2);
+    }
+}
@@ -0,0 +1,112 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 同时预热的一批缓存在固定过期时间、随机过期时间、随机过期时间加提前刷新三种情况下的数据库查询分布
+ */
+@Slf4j
+@Tag("benchmark")
+public class CacheAvalancheTest {
+
+    private static final String KEY_PREFIX = "cache:shop:";
+    private static final int SHOPS = 200;
+    private static final int THREADS = 32;
+    private static final long LOAD_MILLIS = 5;
+    private static final long TTL_MILLIS = 300;
+    private static final long DURATION_MILLIS = 1000;
+    private static final long BUCKET_MILLIS = 50;
+
+    @Test
+    void jitterAndEarlyRefreshFlattenDbLoad() throws Exception {
+        // 预热一轮，避免类加载与JIT影响结果
+        run(0, 0);
+        long[] fixed = run(0, 0);
+        long[] jitter = run(1.0, 0);
+        long[] early = run(1.0, 1.0);
+        log.info("fixed   peakLoads={} redisMiss={}", fixed[0], fixed[1]);
+        log.info("jitter  peakLoads={} redisMiss={}", jitter[0], jitter[1]);
+        log.info("early   peakLoads={} redisMiss={} earlyRefresh={}", early[0], early[1], early[2]);
+
+        // 随机过期时间让同一批缓存错开过期，数据库查询的峰值更低
+        assertTrue(jitter[0] < fixed[0]);
+        // 提前刷新让大部分缓存在过期之前就被重建，请求线程同步未命中的次数更少
+        assertTrue(early[1] < jitter[1]);
+    }
+
+    /**
+     * @return 每个时间片内数据库查询次数的峰值、redis未命中次数、提前刷新次数
+     */
+    private long[] run(double ttlJitter, double earlyRefreshBeta) throws Exception {
+        FakeRedis redis = new FakeRedis(50);
+        CacheClient cacheClient = redis.cacheClient();
+        cacheClient.setTtlJitter(ttlJitter);
+        cacheClient.setEarlyRefreshBeta(earlyRefreshBeta);
+
+        // 同一时刻预热所有店铺
+        Map<String, Shop> values = new HashMap<>();
+        for (long id = 1; id <= SHOPS; id++) {
+            values.put(KEY_PREFIX + id, new Shop().setId(id).setName("103茶餐厅"));
+        }
+        cacheClient.setBatch(values, cacheClient.jsonCodec(Shop.class), TTL_MILLIS, TimeUnit.MILLISECONDS);
+        // 预热时记录的重建耗时，供提前刷新估算
+        cacheClient.stats(KEY_PREFIX).recordLoad(TimeUnit.MILLISECONDS.toNanos(LOAD_MILLIS));
+
+        long start = System.currentTimeMillis();
+        AtomicLongArray buckets = new AtomicLongArray((int) (DURATION_MILLIS / BUCKET_MILLIS) + 1);
+        Function<Long, Shop> dbFallback = id -> {
+            int bucket = (int) ((System.currentTimeMillis() - start) / BUCKET_MILLIS);
+            buckets.incrementAndGet(Math.min(bucket, buckets.length() - 1));
+            sleep(LOAD_MILLIS);
+            return new Shop().setId(id).setName("103茶餐厅");
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long deadline = start + DURATION_MILLIS;
+        for (int i = 0; i < THREADS; i++) {
+            pool.submit(() -> {
+                try {
+                    while (System.currentTimeMillis() < deadline) {
+                        long id = ThreadLocalRandom.current().nextLong(1, SHOPS + 1);
+                        cacheClient.queryWithPassThrough(KEY_PREFIX, id, Shop.class, dbFallback,
+                                TTL_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        pool.shutdown();
+
+        long peak = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            peak = Math.max(peak, buckets.get(i));
+        }
+        Map<String, Object> stats = cacheClient.stats(KEY_PREFIX).snapshot();
+        return new long[]{peak, (Long) stats.get("redisMiss"), (Long) stats.get("earlyRefresh")};
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheClientBatchTest {
+
+    private static final String KEY_PREFIX = "cache:shop:";
+
+    @Test
+    void resolvesIdsInRequestOrderWithOneDbQuery() {
+        FakeRedis redis = new FakeRedis(0);
+        CacheClient cacheClient = redis.cacheClient();
+        CacheCodec<Shop> codec = new ShopBinaryCodec();
+        cacheClient.set(KEY_PREFIX + 2, new Shop().setId(2L).setName("缓存中的店铺"), codec, 30L, TimeUnit.MINUTES);
+
+        AtomicInteger dbQueries = new AtomicInteger();
+        List<Collection<Long>> queried = new ArrayList<>();
+        // 数据库中只有偶数id的店铺
+        Function<Collection<Long>, List<Shop>> dbFallback = ids -> {
+            dbQueries.incrementAndGet();
+            queried.add(new ArrayList<>(ids));
+            List<Shop> shops = new ArrayList<>();
+            ids.stream().filter(id -> id % 2 == 0).forEach(id -> shops.add(new Shop().setId(id).setName("店铺" + id)));
+            return shops;
+        };
+
+        List<Long> ids = Arrays.asList(4L, 2L, 3L, 4L, 6L);
+        long commandsBefore = redis.commandCount();
+        List<Shop> shops = cacheClient.queryBatch(CacheStrategy.PASS_THROUGH, KEY_PREFIX, ids, codec, dbFallback, Shop::getId, 30L, TimeUnit.MINUTES);
+        // MGET和写回的管道各一次往返
+        assertEquals(2, redis.commandCount() - commandsBefore);
+        assertEquals(1, dbQueries.get());
+        assertEquals(3, queried.get(0).size());
+
+        assertEquals(5, shops.size());
+        assertEquals(4L, shops.get(0).getId());
+        assertEquals("缓存中的店铺", shops.get(1).getName());
+        assertNull(shops.get(2));
+        assertEquals(4L, shops.get(3).getId());
+        assertEquals(6L, shops.get(4).getId());
+
+        // 再次查询全部命中缓存，不存在的id命中空值
+        List<Shop> cached = cacheClient.queryBatch(CacheStrategy.PASS_THROUGH, KEY_PREFIX, ids, codec, dbFallback, Shop::getId, 30L, TimeUnit.MINUTES);
+        assertEquals(1, dbQueries.get());
+        assertNull(cached.get(2));
+        assertEquals("店铺6", cached.get(4).getName());
+        assertEquals("", redis.get(KEY_PREFIX + 3));
+    }
+
+    @Test
+    void logicalExpireStrategyWritesEnvelopesAndRebuildsExpired() throws InterruptedException {
+        FakeRedis redis = new FakeRedis(0);
+        CacheClient cacheClient = redis.cacheClient();
+        CacheCodec<Shop> codec = cacheClient.jsonCodec(Shop.class);
+        // id为1的缓存已经逻辑过期
+        cacheClient.setWithLogicalExpire(KEY_PREFIX + 1, new Shop().setId(1L).setName("旧数据"), codec, 0L, TimeUnit.SECONDS);
+        Function<Collection<Long>, List<Shop>> dbFallback = ids -> {
+            List<Shop> shops = new ArrayList<>();
+            ids.forEach(id -> shops.add(new Shop().setId(id).setName("新数据" + id)));
+            return shops;
+        };
+
+        List<Shop> shops = cacheClient.queryBatch(CacheStrategy.LOGICAL_EXPIRE, KEY_PREFIX, Arrays.asList(1L, 2L),
+                codec, dbFallback, Shop::getId, 30L, TimeUnit.MINUTES);
+        // 过期的数据先返回旧值，在后台重建
+        assertEquals("旧数据", shops.get(0).getName());
+        assertEquals("新数据2", shops.get(1).getName());
+        for (int i = 0; i < 100 && !redis.get(KEY_PREFIX + 1).contains("新数据1"); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(redis.get(KEY_PREFIX + 1).contains("新数据1"));
+        // 未命中的id按逻辑过期的格式写回，不设置TTL
+        assertTrue(redis.get(KEY_PREFIX + 2).contains("expireTime"));
+        assertEquals(-1L, redis.template().getExpire(KEY_PREFIX + 2, TimeUnit.MILLISECONDS));
+    }
+}
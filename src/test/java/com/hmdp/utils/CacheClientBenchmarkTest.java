@@ -0,0 +1,100 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 热点key并发访问下三种缓存策略的吞吐量与数据库查询次数对比
+ */
+@Slf4j
+@Tag("benchmark")
+public class CacheClientBenchmarkTest {
+
+    private static final String KEY_PREFIX = "cache:shop:";
+    private static final int THREADS = 64;
+    private static final long DURATION_MILLIS = 600;
+    private static final long EXPIRE_EVERY_MILLIS = 150;
+
+    @Test
+    void compareStrategiesOnHotKey() throws Exception {
+        // 预热一轮，避免类加载与JIT影响第一个策略的结果
+        for (CacheStrategy strategy : CacheStrategy.values()) {
+            run(strategy);
+        }
+        Map<CacheStrategy, long[]> results = new EnumMap<>(CacheStrategy.class);
+        for (CacheStrategy strategy : CacheStrategy.values()) {
+            results.put(strategy, run(strategy));
+        }
+        results.forEach((strategy, r) -> log.info(
+                "{} qps={} dbLoads={} redisCommands={}", strategy, r[0], r[1], r[2]));
+
+        // 同一节点内的并发重建被合并，每次过期最多查询一次数据库
+        long expirations = DURATION_MILLIS / EXPIRE_EVERY_MILLIS + 1;
+        results.forEach((strategy, r) -> assertTrue(r[1] <= expirations, strategy + " dbLoads=" + r[1]));
+    }
+
+    private long[] run(CacheStrategy strategy) throws Exception {
+        FakeRedis redis = new FakeRedis(100);
+        CacheClient cacheClient = redis.cacheClient();
+        AtomicLong dbLoads = new AtomicLong();
+        Function<Long, Shop> dbFallback = id -> {
+            dbLoads.incrementAndGet();
+            sleep(20);
+            return new Shop().setId(id).setName("103茶餐厅");
+        };
+        if (strategy == CacheStrategy.LOGICAL_EXPIRE) {
+            cacheClient.setWithLogicalExpire(KEY_PREFIX + 1, dbFallback.apply(1L), 0L, TimeUnit.SECONDS);
+            dbLoads.set(0);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        AtomicLong ops = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long deadline = System.currentTimeMillis() + DURATION_MILLIS;
+        for (int i = 0; i < THREADS; i++) {
+            pool.submit(() -> {
+                try {
+                    while (System.currentTimeMillis() < deadline) {
+                        cacheClient.query(strategy, KEY_PREFIX, 1L, Shop.class, dbFallback, 1L, TimeUnit.SECONDS);
+                        ops.incrementAndGet();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        // 周期性地让热点key过期，模拟过期瞬间的并发重建
+        while (System.currentTimeMillis() < deadline) {
+            sleep(EXPIRE_EVERY_MILLIS);
+            if (strategy == CacheStrategy.LOGICAL_EXPIRE) {
+                cacheClient.setWithLogicalExpire(KEY_PREFIX + 1, new Shop().setId(1L), 0L, TimeUnit.SECONDS);
+            } else {
+                redis.template().delete(KEY_PREFIX + 1);
+            }
+        }
+        done.await();
+        pool.shutdown();
+        return new long[]{ops.get() * 1000 / DURATION_MILLIS, dbLoads.get(), redis.commandCount()};
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
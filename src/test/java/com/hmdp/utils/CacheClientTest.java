@@ -0,0 +1,141 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存查询策略在异常情况下的行为
+ */
+public class CacheClientTest {
+
+    private static final String KEY_PREFIX = "cache:shop:";
+
+    @Test
+    void mutexWaitGivesUpAfterBudgetAndReadsDb() throws InterruptedException {
+        FakeRedis redis = new FakeRedis(0);
+        CacheClient cacheClient = redis.cacheClient();
+        // 其它节点持有重建锁后卡住，既不写缓存也不释放锁
+        Thread holder = new Thread(() -> redis.lockClient(30).getLock(KEY_PREFIX + 1).tryLock(0, 30, TimeUnit.SECONDS));
+        holder.start();
+        holder.join();
+        assertFalse(redis.hGetAll("lock:" + KEY_PREFIX + 1).isEmpty());
+
+        Shop shop = cacheClient.queryWithMutex(KEY_PREFIX, 1L, Shop.class,
+                id -> new Shop().setId(id).setName("数据库中的店铺"), 30L, TimeUnit.MINUTES);
+
+        assertEquals("数据库中的店铺", shop.getName());
+        // 没有持有锁，不写缓存
+        assertNull(redis.get(KEY_PREFIX + 1));
+    }
+
+    @Test
+    void requestThreadCannotReenterLockHandedToRebuild() throws InterruptedException {
+        FakeRedis redis = new FakeRedis(0);
+        CacheClient cacheClient = redis.cacheClient();
+        CountDownLatch rebuilding = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        // 当前线程触发后台重建，锁交给重建线程，重建期间阻塞
+        cacheClient.rebuildWithLogicalExpireAsync(KEY_PREFIX, 1L, cacheClient.jsonCodec(Shop.class), id -> {
+            rebuilding.countDown();
+            await(finish);
+            return new Shop().setId(id).setName("后台重建");
+        }, 30L, TimeUnit.MINUTES);
+        assertTrue(rebuilding.await(1, TimeUnit.SECONDS));
+        new Thread(() -> {
+            sleep(200);
+            finish.countDown();
+        }).start();
+
+        // 同一个线程再次重建同一个key，不能重入锁，等待后台重建完成后读取缓存
+        AtomicInteger dbQueries = new AtomicInteger();
+        Shop shop = cacheClient.queryWithMutex(KEY_PREFIX, 1L, Shop.class, id -> {
+            dbQueries.incrementAndGet();
+            return new Shop().setId(id).setName("互斥锁重建");
+        }, 30L, TimeUnit.MINUTES);
+
+        assertEquals(0, dbQueries.get());
+        assertEquals("后台重建", shop.getName());
+    }
+
+    @Test
+    void hotKeyEntriesHaveTtlBackstop() throws InterruptedException {
+        FakeRedis redis = new FakeRedis(0);
+        CacheClient cacheClient = redis.cacheClient();
+        cacheClient.setTtlJitter(0);
+        StringRedisTemplate template = redis.template();
+        CacheCodec<Shop> codec = cacheClient.jsonCodec(Shop.class);
+        Function<Long, Shop> dbFallback = id -> new Shop().setId(id).setName("店铺" + id);
+
+        // 热点key未命中时写入逻辑过期的数据，TTL为逻辑过期时间加上保留时间
+        assertEquals("店铺1", cacheClient.queryHot(KEY_PREFIX, 1L, codec, dbFallback, 10L, TimeUnit.SECONDS).getName());
+        long ttl = template.getExpire(KEY_PREFIX + 1, TimeUnit.MILLISECONDS);
+        assertTrue(ttl > 60000 && ttl <= 70000, "ttl: " + ttl);
+
+        // 热点晋升的后台重建同样设置TTL
+        cacheClient.rebuildWithLogicalExpireAsync(KEY_PREFIX, 2L, codec, dbFallback, 10L, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && redis.get(KEY_PREFIX + 2) == null; i++) {
+            Thread.sleep(10);
+        }
+        ttl = template.getExpire(KEY_PREFIX + 2, TimeUnit.MILLISECONDS);
+        assertTrue(ttl > 60000 && ttl <= 70000, "ttl: " + ttl);
+        // 普通的逻辑过期缓存仍然不设置TTL
+        cacheClient.setWithLogicalExpire(KEY_PREFIX + 3, dbFallback.apply(3L), codec, 10L, TimeUnit.SECONDS);
+        assertEquals(-1L, template.getExpire(KEY_PREFIX + 3, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void expiredEntryOfDeletedRowIsReplacedWithNullValue() throws InterruptedException {
+        FakeRedis redis = new FakeRedis(0);
+        CacheClient cacheClient = redis.cacheClient();
+        cacheClient.setTtlJitter(0);
+        CacheCodec<Shop> codec = new ShopBinaryCodec();
+        // 写入时立即逻辑过期，之后数据库中的店铺被删除
+        cacheClient.setWithLogicalExpire(KEY_PREFIX + 1, new Shop().setId(1L).setName("已删除"), codec, 0L, TimeUnit.SECONDS);
+        cacheClient.setWithLogicalExpire(KEY_PREFIX + 2, new Shop().setId(2L).setName("已删除"), codec, 0L, TimeUnit.SECONDS);
+
+        // 1.单个查询返回旧数据，后台重建写入空值
+        assertEquals("已删除", cacheClient.queryWithLogicalExpire(KEY_PREFIX, 1L, codec, id -> null, 10L, TimeUnit.SECONDS).getName());
+        awaitNullValue(redis, KEY_PREFIX + 1);
+        assertNull(cacheClient.queryWithLogicalExpire(KEY_PREFIX, 1L, codec, id -> null, 10L, TimeUnit.SECONDS));
+
+        // 2.批量查询同样写入空值
+        List<Shop> shops = cacheClient.queryBatch(CacheStrategy.LOGICAL_EXPIRE, KEY_PREFIX, Collections.singletonList(2L),
+                codec, ids -> Collections.emptyList(), Shop::getId, 10L, TimeUnit.SECONDS);
+        assertEquals("已删除", shops.get(0).getName());
+        awaitNullValue(redis, KEY_PREFIX + 2);
+        assertTrue(redis.template().getExpire(KEY_PREFIX + 2, TimeUnit.MILLISECONDS) > 0);
+    }
+
+    private static void awaitNullValue(FakeRedis redis, String key) throws InterruptedException {
+        for (int i = 0; i < 100 && !"".equals(redis.get(key)); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals("", redis.get(key));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
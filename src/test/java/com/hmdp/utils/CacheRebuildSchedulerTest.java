@@ -0,0 +1,86 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheRebuildSchedulerTest {
+
+    @Test
+    void deduplicatesRejectsAndCountsFailures() throws Exception {
+        CacheRebuildScheduler scheduler = new CacheRebuildScheduler(1, 2, CacheRebuildScheduler.RejectPolicy.DISCARD, 5);
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        Runnable blocked = () -> {
+            await(blocker);
+            runs.incrementAndGet();
+        };
+        // 1个线程执行中，2个任务排队
+        assertTrue(scheduler.submit("cache:shop:1", blocked));
+        waitUntilActive(scheduler);
+        assertTrue(scheduler.submit("cache:shop:2", blocked));
+        assertTrue(scheduler.submit("cache:shop:3", () -> {
+            throw new IllegalStateException("数据库不可用");
+        }));
+        // 同一个key已有排队的任务，去重
+        assertFalse(scheduler.submit("cache:shop:2", blocked));
+        // 队列已满，丢弃
+        assertFalse(scheduler.submit("cache:shop:4", blocked));
+
+        Map<String, Object> stats = scheduler.snapshot();
+        assertEquals(2, stats.get("queueDepth"));
+        assertEquals(1L, stats.get("deduplicated"));
+        assertEquals(1L, stats.get("rejected"));
+
+        blocker.countDown();
+        scheduler.shutdown();
+        stats = scheduler.snapshot();
+        assertEquals(2, runs.get());
+        assertEquals(2L, stats.get("completed"));
+        assertEquals(1L, stats.get("failed"));
+        assertEquals(0, stats.get("pendingKeys"));
+        // 关闭后不再接收任务
+        assertFalse(scheduler.submit("cache:shop:5", blocked));
+    }
+
+    @Test
+    void callerRunsWhenQueueIsFull() {
+        CacheRebuildScheduler scheduler = new CacheRebuildScheduler(1, 1, CacheRebuildScheduler.RejectPolicy.CALLER_RUNS, 5);
+        CountDownLatch blocker = new CountDownLatch(1);
+        scheduler.submit("cache:shop:1", () -> await(blocker));
+        waitUntilActive(scheduler);
+        scheduler.submit("cache:shop:2", () -> await(blocker));
+        Thread caller = Thread.currentThread();
+        AtomicInteger ranInCaller = new AtomicInteger();
+        assertTrue(scheduler.submit("cache:shop:3", () -> {
+            if (Thread.currentThread() == caller) {
+                ranInCaller.incrementAndGet();
+            }
+        }));
+        assertEquals(1, ranInCaller.get());
+        assertEquals(1L, scheduler.snapshot().get("callerRuns"));
+        blocker.countDown();
+        scheduler.shutdown();
+    }
+
+    // 等待第一个任务被线程取走，之后提交的任务才会进入队列
+    private static void waitUntilActive(CacheRebuildScheduler scheduler) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Integer) scheduler.snapshot().get("activeThreads") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
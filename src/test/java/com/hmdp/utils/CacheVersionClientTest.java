@@ -0,0 +1,23 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheVersionClientTest {
+
+    @Test
+    void bumpAfterEvictionDoesNotRepeatOldVersions() {
+        FakeRedis redis = new FakeRedis(0);
+        CacheVersionClient client = new CacheVersionClient(redis.template());
+        long first = client.version("shop:1");
+        client.bump("shop:1");
+        assertEquals(first + 1, client.version("shop:1"));
+
+        // 版本号被淘汰后，增加的版本号从当前时间开始，不会从1开始
+        redis.clear();
+        long before = System.currentTimeMillis();
+        client.bump("shop:1");
+        assertTrue(client.version("shop:1") > before);
+    }
+}
@@ -0,0 +1,780 @@
+package com.hmdp.utils;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaInteger;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.DefaultTuple;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 测试用的内存版redis，只实现了缓存相关的少量字符串、哈希和有序集合命令，每条命令可以模拟一次网络往返的耗时。
+ * lua脚本用lua解释器原样执行，redis.call操作同一份数据，脚本执行期间不执行其它命令。
+ * 项目中的脚本在创建时预先加载，新增脚本不需要修改本类，只需要补充脚本用到但还不支持的命令。
+ */
+public class FakeRedis {
+
+    private final Map<String, Entry> store = new ConcurrentHashMap<>();
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong commands = new AtomicLong();
+    private final long roundTripNanos;
+    // 脚本的sha1 -> 编译后的脚本
+    private final Map<String, LuaValue> scripts = new HashMap<>();
+    private final Globals lua = JsePlatform.standardGlobals();
+
+    public FakeRedis(long roundTripMicros) {
+        this.roundTripNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+        lua.set("redis", redisTable());
+        loadScripts();
+    }
+
+    public StringRedisTemplate template() {
+        RedisConnectionFactory factory = (RedisConnectionFactory) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class[]{RedisConnectionFactory.class},
+                (proxy, method, args) -> {
+                    if ("getConnection".equals(method.getName())) {
+                        return connection();
+                    }
+                    return defaultValue(method);
+                });
+        StringRedisTemplate template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * 订阅频道，publish的消息在发布线程中同步投递
+     */
+    public void subscribe(String channel, Consumer<String> listener) {
+        subscribers.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * 创建一个已订阅锁释放频道的LockNotifier，相当于一个独立节点
+     */
+    public LockNotifier lockNotifier() {
+        StringRedisTemplate template = template();
+        LockNotifier notifier = new LockNotifier(template);
+        subscribe(RedisConstants.LOCK_RELEASE_CHANNEL, notifier::onRelease);
+        return notifier;
+    }
+
+    /**
+     * 创建一个使用本实例的CacheClient，相当于一个独立节点
+     */
+    public CacheClient cacheClient() {
+        CacheRebuildScheduler scheduler = new CacheRebuildScheduler(10, 1000, CacheRebuildScheduler.RejectPolicy.DISCARD, 10);
+        return new CacheClient(template(), lockClient(30), scheduler);
+    }
+
+    /**
+     * 创建一个使用本实例的RedisLockClient，相当于一个独立节点
+     */
+    public RedisLockClient lockClient(long leaseSeconds) {
+        return new RedisLockClient(template(), lockNotifier(), leaseSeconds);
+    }
+
+    public long commandCount() {
+        return commands.get();
+    }
+
+    public String get(String key) {
+        Entry entry = live(key);
+        return entry == null ? null : new String(entry.value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读取哈希的全部字段，不存在时返回空Map
+     */
+    public Map<String, String> hGetAll(String key) {
+        Entry entry = live(key);
+        return entry == null || entry.hash == null ? Collections.emptyMap() : new HashMap<>(entry.hash);
+    }
+
+    public void clear() {
+        store.clear();
+    }
+
+    private RedisConnection connection() {
+        List<Object> pipeline = new ArrayList<>();
+        boolean[] pipelined = {false};
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{RedisConnection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "openPipeline":
+                            pipelined[0] = true;
+                            return null;
+                        case "isPipelined":
+                            return pipelined[0];
+                        case "closePipeline":
+                            pipelined[0] = false;
+                            List<Object> results = new ArrayList<>(pipeline);
+                            pipeline.clear();
+                            roundTrip();
+                            return results;
+                        case "close":
+                        case "isClosed":
+                        case "isQueueing":
+                            return defaultValue(method);
+                        default:
+                            if (!pipelined[0]) {
+                                roundTrip();
+                            }
+                            Object result = execute(method, args);
+                            if (pipelined[0]) {
+                                pipeline.add(result);
+                                return null;
+                            }
+                            return result;
+                    }
+                });
+    }
+
+    private void roundTrip() {
+        commands.incrementAndGet();
+        if (roundTripNanos > 0) {
+            LockSupport.parkNanos(roundTripNanos);
+        }
+    }
+
+    private Object execute(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "get": {
+                Entry entry = live(key(args[0]));
+                return entry == null ? null : entry.value;
+            }
+            case "mGet": {
+                List<byte[]> values = new ArrayList<>();
+                for (byte[] key : (byte[][]) args[0]) {
+                    Entry entry = live(key(key));
+                    values.add(entry == null ? null : entry.value);
+                }
+                return values;
+            }
+            case "set": {
+                String key = key(args[0]);
+                byte[] value = (byte[]) args[1];
+                if (args.length == 2) {
+                    store.put(key, new Entry(value, -1));
+                    return true;
+                }
+                Expiration expiration = (Expiration) args[2];
+                long expireAt = expiration.isPersistent() ? -1 : System.currentTimeMillis() + expiration.getExpirationTimeInMilliseconds();
+                RedisStringCommands.SetOption option = (RedisStringCommands.SetOption) args[3];
+                if (option == RedisStringCommands.SetOption.SET_IF_ABSENT) {
+                    synchronized (store) {
+                        if (live(key) != null) {
+                            return false;
+                        }
+                        store.put(key, new Entry(value, expireAt));
+                        return true;
+                    }
+                }
+                store.put(key, new Entry(value, expireAt));
+                return true;
+            }
+            case "setEx":
+                store.put(key(args[0]), new Entry((byte[]) args[2], System.currentTimeMillis() + TimeUnit.SECONDS.toMillis((Long) args[1])));
+                return true;
+            case "pSetEx":
+                store.put(key(args[0]), new Entry((byte[]) args[2], System.currentTimeMillis() + (Long) args[1]));
+                return true;
+            case "setNX":
+                synchronized (store) {
+                    if (live(key(args[0])) != null) {
+                        return false;
+                    }
+                    store.put(key(args[0]), new Entry((byte[]) args[1], -1));
+                    return true;
+                }
+            case "del": {
+                long count = 0;
+                for (byte[] key : (byte[][]) args[0]) {
+                    if (store.remove(key(key)) != null) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            case "hMSet": {
+                Map<String, String> hash = new HashMap<>();
+                Entry entry = live(key(args[0]));
+                if (entry != null && entry.hash != null) {
+                    hash.putAll(entry.hash);
+                }
+                ((Map<?, ?>) args[1]).forEach((field, value) -> hash.put(key(field), key(value)));
+                store.put(key(args[0]), new Entry(hash, entry == null ? -1 : entry.expireAt));
+                return null;
+            }
+            case "hSet": {
+                Map<String, String> hash = new HashMap<>();
+                Entry entry = live(key(args[0]));
+                if (entry != null && entry.hash != null) {
+                    hash.putAll(entry.hash);
+                }
+                boolean added = hash.put(key(args[1]), key(args[2])) == null;
+                store.put(key(args[0]), new Entry(hash, entry == null ? -1 : entry.expireAt));
+                return added;
+            }
+            case "hGet": {
+                Entry entry = live(key(args[0]));
+                String value = entry == null || entry.hash == null ? null : entry.hash.get(key(args[1]));
+                return value == null ? null : bytes(value);
+            }
+            case "hGetAll": {
+                Entry entry = live(key(args[0]));
+                Map<byte[], byte[]> hash = new HashMap<>();
+                if (entry != null && entry.hash != null) {
+                    entry.hash.forEach((field, value) -> hash.put(bytes(field), bytes(value)));
+                }
+                return hash;
+            }
+            case "zAdd": {
+                // 有序集合按成员->分数保存在哈希中，只支持写入
+                Map<String, String> zset = new HashMap<>();
+                Entry entry = live(key(args[0]));
+                if (entry != null && entry.hash != null) {
+                    zset.putAll(entry.hash);
+                }
+                boolean added = zset.put(key(args[2]), score((Double) args[1])) == null;
+                store.put(key(args[0]), new Entry(zset, entry == null ? -1 : entry.expireAt, true));
+                return added;
+            }
+            case "zRangeByScoreWithScores": {
+                double[] range = scoreRange(args);
+                Entry entry = live(key(args[0]));
+                Set<RedisZSetCommands.Tuple> tuples = new LinkedHashSet<>();
+                if (entry != null && entry.hash != null) {
+                    entry.hash.entrySet().stream()
+                            .filter(e -> Double.parseDouble(e.getValue()) >= range[0] && Double.parseDouble(e.getValue()) <= range[1])
+                            .sorted(Comparator.comparingDouble(e -> Double.parseDouble(e.getValue())))
+                            .forEach(e -> tuples.add(new DefaultTuple(bytes(e.getKey()), Double.parseDouble(e.getValue()))));
+                }
+                return tuples;
+            }
+            case "zScore": {
+                Entry entry = live(key(args[0]));
+                String score = entry == null || entry.hash == null ? null : entry.hash.get(key(args[1]));
+                return score == null ? null : Double.valueOf(score);
+            }
+            case "zCard": {
+                Entry entry = live(key(args[0]));
+                return entry == null || entry.hash == null ? 0L : (long) entry.hash.size();
+            }
+            case "zRemRangeByScore": {
+                double[] range = scoreRange(args);
+                Entry entry = live(key(args[0]));
+                if (entry == null || entry.hash == null) {
+                    return 0L;
+                }
+                int size = entry.hash.size();
+                entry.hash.values().removeIf(score -> Double.parseDouble(score) >= range[0] && Double.parseDouble(score) <= range[1]);
+                return (long) (size - entry.hash.size());
+            }
+            case "exists":
+                return live(key(args[0])) != null;
+            case "pTtl": {
+                Entry entry = live(key(args[0]));
+                if (entry == null) {
+                    return -2L;
+                }
+                return entry.expireAt < 0 ? -1L : entry.expireAt - System.currentTimeMillis();
+            }
+            case "pExpire": {
+                Entry entry = live(key(args[0]));
+                if (entry == null) {
+                    return false;
+                }
+                entry.expireAt = System.currentTimeMillis() + (Long) args[1];
+                return true;
+            }
+            case "expire": {
+                Entry entry = live(key(args[0]));
+                if (entry == null) {
+                    return false;
+                }
+                entry.expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis((Long) args[1]);
+                return true;
+            }
+            case "publish":
+                return publish(key(args[0]), key(args[1]));
+            case "evalSha": {
+                String sha = args[0] instanceof String ? (String) args[0] : key(args[0]);
+                synchronized (store) {
+                    LuaValue script = scripts.get(sha);
+                    if (script == null) {
+                        throw new RedisSystemException("NOSCRIPT No matching script", null);
+                    }
+                    return eval(script, (ReturnType) args[1], (Integer) args[2], (byte[][]) args[3]);
+                }
+            }
+            case "eval": {
+                String text = key(args[0]);
+                synchronized (store) {
+                    LuaValue script = scripts.computeIfAbsent(DigestUtil.sha1Hex(text), sha -> lua.load(text, "=" + sha));
+                    return eval(script, (ReturnType) args[1], (Integer) args[2], (byte[][]) args[3]);
+                }
+            }
+            default:
+                throw new UnsupportedOperationException("FakeRedis不支持的命令：" + method.getName());
+        }
+    }
+
+    // 分数范围的参数为 (key, min, max) 或 (key, Range, ...)，只支持闭区间
+    private static double[] scoreRange(Object[] args) {
+        if (args[1] instanceof Double) {
+            return new double[]{(Double) args[1], (Double) args[2]};
+        }
+        RedisZSetCommands.Range range = (RedisZSetCommands.Range) args[1];
+        Object min = range.getMin().getValue();
+        Object max = range.getMax().getValue();
+        return new double[]{min == null ? Double.NEGATIVE_INFINITY : ((Number) min).doubleValue(),
+                max == null ? Double.POSITIVE_INFINITY : ((Number) max).doubleValue()};
+    }
+
+    private long publish(String channel, String message) {
+        List<Consumer<String>> listeners = subscribers.get(channel);
+        if (listeners == null) {
+            return 0L;
+        }
+        listeners.forEach(listener -> listener.accept(message));
+        return listeners.size();
+    }
+
+    // 加载项目中全部的lua脚本，相当于启动时执行了SCRIPT LOAD
+    private void loadScripts() {
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath:lua/*.lua")) {
+                String text = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+                String sha = DigestUtil.sha1Hex(text);
+                scripts.put(sha, lua.load(text, "=" + resource.getFilename()));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 执行脚本，KEYS和ARGV按redis的规则传入，返回值按redis的规则转换
+    private Object eval(LuaValue script, ReturnType returnType, int numKeys, byte[][] keysAndArgs) {
+        LuaTable keys = new LuaTable();
+        LuaTable argv = new LuaTable();
+        for (int i = 0; i < keysAndArgs.length; i++) {
+            if (i < numKeys) {
+                keys.set(i + 1, LuaString.valueOf(keysAndArgs[i]));
+            } else {
+                argv.set(i - numKeys + 1, LuaString.valueOf(keysAndArgs[i]));
+            }
+        }
+        lua.set("KEYS", keys);
+        lua.set("ARGV", argv);
+        Object result;
+        try {
+            result = fromLua(script.call());
+        } catch (LuaError e) {
+            throw new RedisSystemException("ERR " + e.getMessage(), e);
+        }
+        if (returnType == ReturnType.BOOLEAN) {
+            return result != null && !Long.valueOf(0).equals(result);
+        }
+        return result;
+    }
+
+    private LuaTable redisTable() {
+        LuaTable redis = new LuaTable();
+        redis.set("call", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return toLua(command(args));
+            }
+        });
+        redis.set("pcall", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                try {
+                    return toLua(command(args));
+                } catch (LuaError e) {
+                    LuaTable error = new LuaTable();
+                    error.set("err", e.getMessage());
+                    return error;
+                }
+            }
+        });
+        redis.set("replicate_commands", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return LuaValue.TRUE;
+            }
+        });
+        return redis;
+    }
+
+    // redis.call执行的命令，回复为Long、byte[]、List、Status或null
+    private Object command(Varargs args) {
+        String name = args.checkjstring(1).toLowerCase();
+        byte[][] a = new byte[args.narg() - 1][];
+        for (int i = 0; i < a.length; i++) {
+            LuaString arg = args.arg(i + 2).checkstring();
+            a[i] = new byte[arg.rawlen()];
+            arg.copyInto(0, a[i], 0, a[i].length);
+        }
+        long now = System.currentTimeMillis();
+        switch (name) {
+            case "exists":
+                return live(key(a[0])) == null ? 0L : 1L;
+            case "type": {
+                Entry entry = live(key(a[0]));
+                return new Status(entry == null ? "none" : entry.zset ? "zset" : entry.hash != null ? "hash" : "string");
+            }
+            case "get": {
+                Entry entry = string(key(a[0]));
+                return entry == null ? null : entry.value;
+            }
+            case "set": {
+                long expireAt = -1;
+                for (int i = 2; i < a.length; i++) {
+                    String option = key(a[i]).toLowerCase();
+                    if ("px".equals(option)) {
+                        expireAt = now + Long.parseLong(key(a[++i]));
+                    } else if ("ex".equals(option)) {
+                        expireAt = now + TimeUnit.SECONDS.toMillis(Long.parseLong(key(a[++i])));
+                    } else {
+                        throw new LuaError("FakeRedis不支持的SET参数：" + option);
+                    }
+                }
+                store.put(key(a[0]), new Entry(a[1], expireAt));
+                return new Status("OK");
+            }
+            case "incr": {
+                Entry entry = string(key(a[0]));
+                long value = (entry == null ? 0 : Long.parseLong(key(entry.value))) + 1;
+                store.put(key(a[0]), new Entry(bytes(String.valueOf(value)), entry == null ? -1 : entry.expireAt));
+                return value;
+            }
+            case "del": {
+                long count = 0;
+                for (byte[] key : a) {
+                    if (live(key(key)) != null && store.remove(key(key)) != null) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            case "pexpire": {
+                Entry entry = live(key(a[0]));
+                if (entry == null) {
+                    return 0L;
+                }
+                entry.expireAt = now + Long.parseLong(key(a[1]));
+                return 1L;
+            }
+            case "pttl": {
+                Entry entry = live(key(a[0]));
+                if (entry == null) {
+                    return -2L;
+                }
+                return entry.expireAt < 0 ? -1L : entry.expireAt - now;
+            }
+            case "hset": {
+                Map<String, String> hash = hash(key(a[0]), true);
+                long added = 0;
+                for (int i = 1; i + 1 < a.length; i += 2) {
+                    if (hash.put(key(a[i]), key(a[i + 1])) == null) {
+                        added++;
+                    }
+                }
+                return added;
+            }
+            case "hexists": {
+                Map<String, String> hash = hash(key(a[0]), false);
+                return hash != null && hash.containsKey(key(a[1])) ? 1L : 0L;
+            }
+            case "hincrby": {
+                Map<String, String> hash = hash(key(a[0]), true);
+                long value = Long.parseLong(hash.getOrDefault(key(a[1]), "0")) + Long.parseLong(key(a[2]));
+                hash.put(key(a[1]), String.valueOf(value));
+                return value;
+            }
+            case "hgetall": {
+                Map<String, String> hash = hash(key(a[0]), false);
+                List<Object> reply = new ArrayList<>();
+                if (hash != null) {
+                    hash.forEach((field, value) -> {
+                        reply.add(bytes(field));
+                        reply.add(bytes(value));
+                    });
+                }
+                return reply;
+            }
+            case "publish":
+                return publish(key(a[0]), key(a[1]));
+            case "time": {
+                long micros = TimeUnit.MILLISECONDS.toMicros(now);
+                List<Object> reply = new ArrayList<>();
+                reply.add(bytes(String.valueOf(micros / 1_000_000)));
+                reply.add(bytes(String.valueOf(micros % 1_000_000)));
+                return reply;
+            }
+            case "zadd": {
+                Map<String, String> zset = zset(key(a[0]), true);
+                long added = 0;
+                for (int i = 1; i + 1 < a.length; i += 2) {
+                    if (zset.put(key(a[i + 1]), score(parseScore(key(a[i])))) == null) {
+                        added++;
+                    }
+                }
+                return added;
+            }
+            case "zcard": {
+                Map<String, String> zset = zset(key(a[0]), false);
+                return zset == null ? 0L : (long) zset.size();
+            }
+            case "zremrangebyscore": {
+                Map<String, String> zset = zset(key(a[0]), false);
+                if (zset == null) {
+                    return 0L;
+                }
+                double min = parseScore(key(a[1]));
+                double max = parseScore(key(a[2]));
+                int size = zset.size();
+                zset.values().removeIf(score -> Double.parseDouble(score) >= min && Double.parseDouble(score) <= max);
+                return (long) (size - zset.size());
+            }
+            case "zrange": {
+                Map<String, String> zset = zset(key(a[0]), false);
+                List<Object> reply = new ArrayList<>();
+                if (zset == null) {
+                    return reply;
+                }
+                List<Map.Entry<String, String>> sorted = new ArrayList<>(zset.entrySet());
+                sorted.sort(Comparator.<Map.Entry<String, String>>comparingDouble(e -> Double.parseDouble(e.getValue()))
+                        .thenComparing(Map.Entry::getKey));
+                int size = sorted.size();
+                int start = Integer.parseInt(key(a[1]));
+                int stop = Integer.parseInt(key(a[2]));
+                start = Math.max(start < 0 ? size + start : start, 0);
+                stop = Math.min(stop < 0 ? size + stop : stop, size - 1);
+                boolean withScores = a.length > 3 && "withscores".equalsIgnoreCase(key(a[3]));
+                for (int i = start; i <= stop; i++) {
+                    reply.add(bytes(sorted.get(i).getKey()));
+                    if (withScores) {
+                        reply.add(bytes(sorted.get(i).getValue()));
+                    }
+                }
+                return reply;
+            }
+            default:
+                throw new LuaError("FakeRedis不支持的命令：" + name);
+        }
+    }
+
+    // 读取字符串类型的key，类型不符时与redis一样报错
+    private Entry string(String key) {
+        Entry entry = live(key);
+        if (entry != null && entry.hash != null) {
+            throw new LuaError("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return entry;
+    }
+
+    // 读取哈希类型的key，create为true时不存在则创建
+    private Map<String, String> hash(String key, boolean create) {
+        return collection(key, create, false);
+    }
+
+    private Map<String, String> zset(String key, boolean create) {
+        return collection(key, create, true);
+    }
+
+    private Map<String, String> collection(String key, boolean create, boolean zset) {
+        Entry entry = live(key);
+        if (entry != null && (entry.hash == null || entry.zset != zset)) {
+            throw new LuaError("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        if (entry == null) {
+            if (!create) {
+                return null;
+            }
+            entry = new Entry(new HashMap<>(), -1, zset);
+            store.put(key, entry);
+        }
+        return entry.hash;
+    }
+
+    private static double parseScore(String score) {
+        switch (score.toLowerCase()) {
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+            case "+inf":
+            case "inf":
+                return Double.POSITIVE_INFINITY;
+            default:
+                return Double.parseDouble(score);
+        }
+    }
+
+    // 分数按redis的格式输出，整数不带小数点
+    private static String score(double score) {
+        return score == Math.rint(score) && !Double.isInfinite(score) ? String.valueOf((long) score) : String.valueOf(score);
+    }
+
+    // redis的回复转换为lua的值：整数为number，字符串为string，nil为false，多条回复为table，状态为{ok=...}
+    private static LuaValue toLua(Object reply) {
+        if (reply == null) {
+            return LuaValue.FALSE;
+        }
+        if (reply instanceof Long) {
+            return LuaInteger.valueOf((Long) reply);
+        }
+        if (reply instanceof byte[]) {
+            return LuaString.valueOf((byte[]) reply);
+        }
+        if (reply instanceof Status) {
+            LuaTable status = new LuaTable();
+            status.set("ok", ((Status) reply).value);
+            return status;
+        }
+        LuaTable table = new LuaTable();
+        List<?> list = (List<?>) reply;
+        for (int i = 0; i < list.size(); i++) {
+            table.set(i + 1, toLua(list.get(i)));
+        }
+        return table;
+    }
+
+    // lua的返回值转换为redis的回复：number截断为整数，false和nil为nil，table只取到第一个nil为止
+    private static Object fromLua(LuaValue value) {
+        if (value.isnil() || value == LuaValue.FALSE) {
+            return null;
+        }
+        if (value == LuaValue.TRUE) {
+            return 1L;
+        }
+        if (value.type() == LuaValue.TNUMBER) {
+            return value.tolong();
+        }
+        if (value.isstring()) {
+            LuaString string = value.checkstring();
+            byte[] bytes = new byte[string.rawlen()];
+            string.copyInto(0, bytes, 0, bytes.length);
+            return bytes;
+        }
+        if (value.istable()) {
+            if (!value.get("err").isnil()) {
+                throw new LuaError(value.get("err").tojstring());
+            }
+            if (!value.get("ok").isnil()) {
+                return value.get("ok").tojstring();
+            }
+            List<Object> list = new ArrayList<>();
+            for (int i = 1; !value.get(i).isnil(); i++) {
+                list.add(fromLua(value.get(i)));
+            }
+            return list;
+        }
+        throw new LuaError("不支持的返回值类型：" + value.typename());
+    }
+
+    private Entry live(String key) {
+        Entry entry = store.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt >= 0 && entry.expireAt <= System.currentTimeMillis()) {
+            store.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private static String key(Object raw) {
+        return new String((byte[]) raw, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        return null;
+    }
+
+    private static class Entry {
+        private final byte[] value;
+        private final Map<String, String> hash;
+        // 有序集合按成员->分数保存在哈希中
+        private final boolean zset;
+        private volatile long expireAt;
+
+        private Entry(byte[] value, long expireAt) {
+            this.value = value;
+            this.hash = null;
+            this.zset = false;
+            this.expireAt = expireAt;
+        }
+
+        private Entry(Map<String, String> hash, long expireAt) {
+            this(hash, expireAt, false);
+        }
+
+        private Entry(Map<String, String> hash, long expireAt, boolean zset) {
+            this.value = null;
+            this.hash = hash;
+            this.zset = zset;
+            this.expireAt = expireAt;
+        }
+    }
+
+    // 状态回复，在lua中为{ok=...}
+    private static class Status {
+        private final String value;
+
+        private Status(String value) {
+            this.value = value;
+        }
+    }
+}
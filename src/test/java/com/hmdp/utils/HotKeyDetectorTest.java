@@ -0,0 +1,54 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotKeyDetectorTest {
+
+    @Test
+    void promotesHotKeysAndDemotesAfterTrafficFallsOff() {
+        // 60秒窗口，6个时间片，窗口内访问100次晋升，低于20次降级
+        HotKeyDetector detector = new HotKeyDetector(60_000, 6, 65536, 4, 100, 20, 10);
+        long now = 1_000_000_000L;
+
+        // 大量冷门key各访问几次，不应该晋升
+        for (long key = 1; key <= 50_000; key++) {
+            for (int i = 0; i < 3; i++) {
+                assertFalse(detector.record(key, now));
+            }
+        }
+        // 热点key在窗口内分散访问，第100次访问时晋升，且只晋升一次
+        int promotions = 0;
+        for (int i = 0; i < 150; i++) {
+            if (detector.record(7_777_777L, now + i * 300L)) {
+                promotions++;
+                assertTrue(i >= 99 - 3, "count-min只会高估，不会提前太多晋升：" + i);
+            }
+        }
+        assertEquals(1, promotions);
+        assertTrue(detector.isHot(7_777_777L));
+        assertFalse(detector.isHot(1L));
+
+        // 访问量仍在窗口内，不降级
+        assertTrue(detector.demote(now + 50_000).isEmpty());
+        // 超过一个窗口没有访问，降级
+        List<Long> demoted = detector.demote(now + 120_000);
+        assertEquals(1, demoted.size());
+        assertFalse(detector.isHot(7_777_777L));
+    }
+
+    @Test
+    void limitsNumberOfHotKeys() {
+        HotKeyDetector detector = new HotKeyDetector(60_000, 6, 1024, 4, 10, 2, 3);
+        long now = 1_000_000_000L;
+        for (long key = 1; key <= 5; key++) {
+            for (int i = 0; i < 10; i++) {
+                detector.record(key, now);
+            }
+        }
+        assertEquals(3, detector.hotKeys().size());
+    }
+}
@@ -0,0 +1,43 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdBloomFilterTest {
+
+    @Test
+    void nodeThatMissedTheAddMessageStillFindsNewIds() {
+        FakeRedis redis = new FakeRedis(0);
+        IdBloomFilter node1 = filter(redis);
+        IdBloomFilter node2 = filter(redis);
+        node1.rebuildAll();
+        node2.rebuildAll();
+        assertTrue(node2.mightContain(RedisConstants.BLOOM_SHOP, 1L));
+        assertFalse(node2.mightContain(RedisConstants.BLOOM_SHOP, 3L));
+
+        // node2没有订阅新增id的频道，本地判断不存在后查询redis中新增的id
+        node1.put(RedisConstants.BLOOM_SHOP, 3L);
+        assertTrue(node1.mightContain(RedisConstants.BLOOM_SHOP, 3L));
+        assertTrue(node2.mightContain(RedisConstants.BLOOM_SHOP, 3L));
+        // 查询到之后写入本地过滤器，不再访问redis
+        long before = redis.commandCount();
+        assertTrue(node2.mightContain(RedisConstants.BLOOM_SHOP, 3L));
+        assertEquals(before, redis.commandCount());
+        assertFalse(node2.mightContain(RedisConstants.BLOOM_SHOP, 4L));
+    }
+
+    private static IdBloomFilter filter(FakeRedis redis) {
+        IdBloomFilter filter = new IdBloomFilter();
+        ReflectionTestUtils.setField(filter, "stringRedisTemplate", redis.template());
+        ReflectionTestUtils.setField(filter, "expectedInsertions", 1000L);
+        ReflectionTestUtils.setField(filter, "fpp", 0.01);
+        ReflectionTestUtils.setField(filter, "rebuildIntervalMillis", 3600000L);
+        filter.register(RedisConstants.BLOOM_SHOP, consumer -> {
+            consumer.accept(1L);
+            consumer.accept(2L);
+        });
+        return filter;
+    }
+}
@@ -0,0 +1,124 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginSessionStoreTest {
+
+    @Test
+    void servesRepeatedRequestsLocallyAndRefreshesOnlyBelowRatio() {
+        FakeRedis redis = new FakeRedis(0);
+        LoginSessionStore node1 = new LoginSessionStore(redis.template(), 100, 60, 0.5, "packed");
+        LoginSessionStore node2 = new LoginSessionStore(redis.template(), 100, 60, 0.5, "packed");
+        node1.save("t1", user(1L));
+
+        // 1.保存的节点直接使用本地缓存
+        long before = redis.commandCount();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(1L, node1.get("t1").getId());
+        }
+        assertEquals(before, redis.commandCount());
+
+        // 2.其它节点一次往返查询用户信息和过期时间，剩余时间充足时不续期
+        before = redis.commandCount();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("用户1", node2.get("t1").getNickName());
+        }
+        assertEquals(before + 1, redis.commandCount());
+
+        // 3.剩余时间低于一半时续期一次
+        LoginSessionStore node3 = new LoginSessionStore(redis.template(), 100, 60, 0.5, "packed");
+        long ttl = TimeUnit.SECONDS.toMillis(RedisConstants.LOGIN_USER_TTL);
+        redis.template().expire(RedisConstants.LOGIN_USER_KEY + "t1", ttl / 4, TimeUnit.MILLISECONDS);
+        before = redis.commandCount();
+        for (int i = 0; i < 1000; i++) {
+            assertNotNull(node3.get("t1"));
+        }
+        assertEquals(before + 2, redis.commandCount());
+        assertTrue(redis.template().getExpire(RedisConstants.LOGIN_USER_KEY + "t1", TimeUnit.MILLISECONDS) > ttl * 9 / 10);
+
+        assertNull(node3.get("missing"));
+    }
+
+    @Test
+    void logoutInvalidatesOtherNodes() {
+        FakeRedis redis = new FakeRedis(0);
+        LoginSessionStore node1 = new LoginSessionStore(redis.template(), 100, 60, 0.5, "packed");
+        LoginSessionStore node2 = new LoginSessionStore(redis.template(), 100, 60, 0.5, "packed");
+        redis.subscribe(RedisConstants.LOGIN_TOKEN_INVALIDATE_CHANNEL, node2::onInvalidate);
+        node1.save("t1", user(1L));
+        assertNotNull(node2.get("t1"));
+
+        node1.remove("t1");
+        assertNull(node1.get("t1"));
+        assertNull(node2.get("t1"));
+    }
+
+    @Test
+    void readsBothFormatsAndSharesIconsBetweenSessions() {
+        FakeRedis redis = new FakeRedis(0);
+        LoginSessionStore hashNode = new LoginSessionStore(redis.template(), 100, 60, 0.5, "hash");
+        LoginSessionStore packedNode = new LoginSessionStore(redis.template(), 100, 60, 0.5, "packed");
+        UserDTO noIcon = user(2L);
+        noIcon.setIcon(null);
+        hashNode.save("old", user(1L));
+        packedNode.save("new1", user(1L));
+        packedNode.save("new2", noIcon);
+
+        // 其它节点读取两种格式的结果相同
+        LoginSessionStore reader = new LoginSessionStore(redis.template(), 100, 60, 0.5, "packed");
+        assertEquals(user(1L), reader.get("old"));
+        assertEquals(user(1L), reader.get("new1"));
+        assertEquals(noIcon, reader.get("new2"));
+
+        // 紧凑格式不保存头像，同一用户的登录态共用头像
+        assertEquals("1\t用户1", redis.get(RedisConstants.LOGIN_USER_KEY + "new1"));
+        assertEquals("/imgs/icons/1.jpg", redis.get(RedisConstants.LOGIN_ICON_KEY + 1));
+        assertTrue(redis.template().getExpire(RedisConstants.LOGIN_ICON_KEY + 1, TimeUnit.MILLISECONDS) > 0);
+    }
+
+    @Test
+    void codeLoginConsumesCodeAndWritesSessionInOneRoundTripWhenPhoneIsCached() {
+        FakeRedis redis = new FakeRedis(0);
+        LoginSessionStore node1 = new LoginSessionStore(redis.template(), 100, 60, 0.5, "packed");
+        LoginSessionStore node2 = new LoginSessionStore(redis.template(), 100, 60, 0.5, "packed");
+        String phone = "13686869696";
+        String codeKey = RedisConstants.LOGIN_CODE_KEY + phone;
+
+        // 1.验证码错误时不消费验证码
+        redis.template().opsForValue().set(codeKey, "123456");
+        assertNull(node1.loginWithCode(phone, "654321", "t1"));
+        assertNull(node1.loginWithCode(phone, null, "t1"));
+        // 2.验证码正确但用户未缓存，验证码被消费，由调用方查询数据库后写入
+        LoginSessionStore.CodeLogin miss = node1.loginWithCode(phone, "123456", "t1");
+        assertNull(miss.getUser());
+        assertNull(node1.loginWithCode(phone, "123456", "t1"));
+        node1.save("t1", user(1L), phone);
+        assertEquals(user(1L), node2.get("t1"));
+
+        // 3.用户已缓存时一次往返完成登录
+        redis.template().opsForValue().set(codeKey, "111111");
+        long before = redis.commandCount();
+        LoginSessionStore.CodeLogin hit = node1.loginWithCode(phone, "111111", "t2");
+        assertEquals(before + 1, redis.commandCount());
+        assertEquals(user(1L), hit.getUser());
+        assertNull(redis.get(codeKey));
+        assertEquals(user(1L), node2.get("t2"));
+
+        // 4.不写入登录态时只校验验证码并返回用户
+        redis.template().opsForValue().set(codeKey, "222222");
+        assertEquals(user(1L), node1.loginWithCode(phone, "222222", null).getUser());
+    }
+
+    private static UserDTO user(Long id) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setNickName("用户" + id);
+        user.setIcon("/imgs/icons/" + id + ".jpg");
+        return user;
+    }
+}
@@ -0,0 +1,28 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageCursorTest {
+
+    @Test
+    void sourceTagSurvivesEncoding() {
+        PageCursor tagged = PageCursor.decode(new PageCursor("idx", 42L, 7L).encode());
+        assertEquals(new PageCursor("idx", 42L, 7L), tagged);
+        assertTrue(tagged.isFrom("idx"));
+        assertFalse(tagged.isFrom("db"));
+
+        PageCursor db = PageCursor.decode(new PageCursor("db", null, 7L).encode());
+        assertNull(db.getSortValue());
+        assertTrue(db.isFrom("db"));
+
+        // 没有来源标记的游标
+        PageCursor plain = PageCursor.decode(new PageCursor(42L, 7L).encode());
+        assertNull(plain.getSource());
+        assertFalse(plain.isFrom("idx"));
+
+        assertNull(PageCursor.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("bm90LWEtY3Vyc29y"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+
+    @Test
+    void enforcesLimitAcrossNodesAndRejectsLocallyWhileBlocked() throws Exception {
+        FakeRedis redis = new FakeRedis(0);
+        RateLimiter node1 = new RateLimiter(redis.template(), 100);
+        RateLimiter node2 = new RateLimiter(redis.template(), 100);
+
+        // 1.两个节点共用一个窗口，并发请求中恰好limit个通过
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        AtomicInteger passed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(400);
+        for (int i = 0; i < 400; i++) {
+            RateLimiter node = i % 2 == 0 ? node1 : node2;
+            pool.submit(() -> {
+                if (node.tryAcquire("code:ip:1.1.1.1", 50, 60_000) == 0) {
+                    passed.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        pool.shutdown();
+        assertEquals(50, passed.get());
+
+        // 2.被拒绝后，等待期间不访问redis
+        long before = redis.commandCount();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(node1.tryAcquire("code:ip:1.1.1.1", 50, 60_000) > 0);
+            assertTrue(node2.tryAcquire("code:ip:1.1.1.1", 50, 60_000) > 0);
+        }
+        assertEquals(before, redis.commandCount());
+        // 其它key不受影响
+        assertEquals(0, node1.tryAcquire("code:ip:2.2.2.2", 50, 60_000));
+    }
+
+    @Test
+    void localBucketNeverRejectsWhatRedisWouldAllow() throws Exception {
+        FakeRedis redis = new FakeRedis(0);
+        RateLimiter limiter = new RateLimiter(redis.template(), 100);
+        // 窗口200毫秒允许5个请求，每40毫秒请求一次，全部通过
+        for (int i = 0; i < 15; i++) {
+            assertEquals(0, limiter.tryAcquire("like:user:1", 5, 200), "第" + i + "次请求");
+            Thread.sleep(41);
+        }
+        // 突发请求只有窗口内剩余的名额通过，窗口过去后恢复
+        int passed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (limiter.tryAcquire("like:user:2", 5, 200) == 0) {
+                passed++;
+            }
+        }
+        assertEquals(5, passed);
+        long[] rejected = limiter.rejectedCounts();
+        assertEquals(15, rejected[0]);
+        Thread.sleep(210);
+        assertEquals(0, limiter.tryAcquire("like:user:2", 5, 200));
+    }
+}
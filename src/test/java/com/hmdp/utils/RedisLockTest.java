@@ -0,0 +1,193 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.BooleanUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分布式锁的持有者校验、重入、看门狗续期，以及多线程竞争下的锁交接延迟
+ */
+@Slf4j
+public class RedisLockTest {
+
+    private static final int NODES = 2;
+    private static final int THREADS_PER_NODE = 64;
+    private static final int ROUNDS = 4;
+
+    @Test
+    void onlyOwnerCanReleaseAndLockIsReentrant() {
+        FakeRedis redis = new FakeRedis(0);
+        RedisLockClient node1 = redis.lockClient(30);
+        RedisLockClient node2 = redis.lockClient(30);
+
+        ILock lock = node1.getLock("order:1");
+        assertTrue(lock.tryLock());
+        // 同一线程再次获取，重入
+        assertTrue(node1.getLock("order:1").tryLock());
+        // 其它持有者获取失败，释放也不影响锁
+        ILock other = node2.getLock("order:1");
+        runInOtherThread(() -> {
+            assertFalse(other.tryLock());
+            other.unlock();
+        });
+        // 锁是哈希，持有者标识 -> 重入次数
+        assertEquals(Collections.singletonList("2"), new ArrayList<>(redis.hGetAll("lock:order:1").values()));
+        // 释放与获取相同的次数后才真正释放
+        lock.unlock();
+        assertEquals(Collections.singletonList("1"), new ArrayList<>(redis.hGetAll("lock:order:1").values()));
+        lock.unlock();
+        assertTrue(redis.hGetAll("lock:order:1").isEmpty());
+
+        // 不可重入的锁同一线程也不能再次获取
+        ILock nonReentrant = node1.getLock("order:2", false);
+        assertTrue(nonReentrant.tryLock());
+        assertFalse(node1.getLock("order:2", false).tryLock());
+        nonReentrant.unlock();
+    }
+
+    @Test
+    void watchdogRenewsLeaseUntilUnlock() throws Exception {
+        FakeRedis redis = new FakeRedis(0);
+        RedisLockClient node1 = redis.lockClient(1);
+        RedisLockClient node2 = redis.lockClient(1);
+
+        ILock lock = node1.getLock("rebuild");
+        assertTrue(lock.tryLock());
+        // 超过租期仍然持有
+        Thread.sleep(1500);
+        ILock other = node2.getLock("rebuild");
+        runInOtherThread(() -> assertFalse(other.tryLock()));
+        // 指定租期的锁不续期，到期自动释放
+        ILock leased = node1.getLock("leased");
+        assertTrue(leased.tryLock(0, 200, TimeUnit.MILLISECONDS));
+        Thread.sleep(400);
+        runInOtherThread(() -> assertTrue(node2.getLock("leased").tryLock(0, 200, TimeUnit.MILLISECONDS)));
+        // 释放后其它节点等待中的线程被唤醒
+        AtomicLong acquiredAt = new AtomicLong();
+        Thread waiter = new Thread(() -> {
+            if (other.tryLock(5, TimeUnit.SECONDS)) {
+                acquiredAt.set(System.nanoTime());
+                other.unlock();
+            }
+        });
+        waiter.start();
+        Thread.sleep(100);
+        lock.unlock();
+        waiter.join();
+        assertTrue(acquiredAt.get() > 0);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void handoffLatencyUnderContention() throws Exception {
+        // 预热一轮
+        contend(false);
+        contend(true);
+
+        long[] spin = contend(false);
+        long[] notify = contend(true);
+        log.info("spin-sleep   handoff p50={}us p99={}us throughput={}/s redisCommands={}", spin[0], spin[1], spin[2], spin[3]);
+        log.info("pubsub-lock  handoff p50={}us p99={}us throughput={}/s redisCommands={}", notify[0], notify[1], notify[2], notify[3]);
+
+        // 等待通知的线程不会持续轮询redis
+        assertTrue(notify[3] < spin[3]);
+    }
+
+    /**
+     * 两个节点各64个线程竞争同一把锁，每个线程获取锁若干次，每次持有1毫秒
+     * @return 锁交接延迟的p50、p99微秒，每秒获取锁的次数，redis命令数
+     */
+    private long[] contend(boolean useLock) throws Exception {
+        FakeRedis redis = new FakeRedis(100);
+        List<RedisLockClient> clients = new ArrayList<>();
+        List<StringRedisTemplate> templates = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            clients.add(redis.lockClient(30));
+            templates.add(redis.template());
+        }
+        AtomicLong releasedAt = new AtomicLong();
+        AtomicInteger holders = new AtomicInteger();
+        List<Long> handoffs = Collections.synchronizedList(new ArrayList<>());
+
+        int threads = NODES * THREADS_PER_NODE;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int node = t % NODES;
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    for (int r = 0; r < ROUNDS; r++) {
+                        ILock lock = clients.get(node).getLock("hot");
+                        if (useLock) {
+                            assertTrue(lock.tryLock(60, TimeUnit.SECONDS));
+                        } else {
+                            // 原来的方式：SETNX失败后休眠重试
+                            while (!BooleanUtil.isTrue(templates.get(node).opsForValue()
+                                    .setIfAbsent("lock:hot", "1", 10, TimeUnit.SECONDS))) {
+                                Thread.sleep(10);
+                            }
+                        }
+                        long last = releasedAt.get();
+                        if (last > 0) {
+                            handoffs.add(System.nanoTime() - last);
+                        }
+                        assertEquals(1, holders.incrementAndGet());
+                        Thread.sleep(1);
+                        holders.decrementAndGet();
+                        releasedAt.set(System.nanoTime());
+                        if (useLock) {
+                            lock.unlock();
+                        } else {
+                            templates.get(node).delete("lock:hot");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(120, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+
+        assertEquals(threads * ROUNDS - 1, handoffs.size());
+        List<Long> sorted = new ArrayList<>(handoffs);
+        Collections.sort(sorted);
+        long p50 = TimeUnit.NANOSECONDS.toMicros(sorted.get(sorted.size() / 2));
+        long p99 = TimeUnit.NANOSECONDS.toMicros(sorted.get(sorted.size() * 99 / 100));
+        return new long[]{p50, p99, threads * ROUNDS * TimeUnit.SECONDS.toNanos(1) / elapsed, redis.commandCount()};
+    }
+
+    private static void runInOtherThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        AtomicLong failed = new AtomicLong();
+        thread.setUncaughtExceptionHandler((t, e) -> failed.incrementAndGet());
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertEquals(0, failed.get());
+    }
+}
@@ -0,0 +1,183 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在真实的redis中执行lua脚本，其它测试使用的FakeRedis用lua解释器执行同样的脚本，但redis命令是java实现的
+ * <p>
+ * 需要docker，没有docker时跳过；只运行本测试：mvn test -Predis
+ */
+@Tag("redis")
+@Testcontainers(disabledWithoutDocker = true)
+public class RedisScriptTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:6.2-alpine"))
+            .withExposedPorts(6379);
+
+    private static LettuceConnectionFactory factory;
+    private static RedisMessageListenerContainer listenerContainer;
+    private static StringRedisTemplate template;
+
+    @BeforeAll
+    static void connect() {
+        factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        factory.afterPropertiesSet();
+        template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(factory);
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @AfterAll
+    static void disconnect() throws Exception {
+        listenerContainer.destroy();
+        factory.destroy();
+    }
+
+    @BeforeEach
+    void flush() {
+        template.execute((RedisCallback<Object>) connection -> {
+            connection.flushAll();
+            return null;
+        });
+    }
+
+    @Test
+    void lockUnlockAndRenewScripts() throws Exception {
+        RedisLockClient node1 = lockClient(1);
+        RedisLockClient node2 = lockClient(1);
+        String key = RedisConstants.LOCK_KEY_PREFIX + "rebuild";
+
+        // 1.获取锁并重入，其它线程获取失败
+        ILock lock = node1.getLock("rebuild");
+        assertTrue(lock.tryLock());
+        assertTrue(lock.tryLock());
+        ILock other = node2.getLock("rebuild");
+        runInOtherThread(() -> assertFalse(other.tryLock()));
+        // 2.超过租期后看门狗仍在续期
+        Thread.sleep(1500);
+        runInOtherThread(() -> assertFalse(other.tryLock()));
+        // 3.重入次数减一后仍然持有
+        lock.unlock();
+        assertTrue(template.hasKey(key));
+        long ttl = template.getExpire(key, TimeUnit.MILLISECONDS);
+        assertTrue(ttl > 0 && ttl <= 1000, "ttl: " + ttl);
+        // 4.完全释放后广播通知，其它节点等待中的线程被唤醒
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            if (other.tryLock(5, TimeUnit.SECONDS)) {
+                acquired.set(true);
+                other.unlock();
+            }
+        });
+        waiter.start();
+        Thread.sleep(100);
+        lock.unlock();
+        waiter.join();
+        assertTrue(acquired.get());
+        assertFalse(template.hasKey(key));
+    }
+
+    @Test
+    void rateLimitScriptSharesWindowAcrossNodes() {
+        RateLimiter node1 = new RateLimiter(template, 100);
+        RateLimiter node2 = new RateLimiter(template, 100);
+        int passed = 0;
+        for (int i = 0; i < 20; i++) {
+            if ((i % 2 == 0 ? node1 : node2).tryAcquire("code:ip:1.1.1.1", 5, 60_000) == 0) {
+                passed++;
+            }
+        }
+        assertEquals(5, passed);
+        assertEquals(5L, template.opsForZSet().zCard(RedisConstants.RATE_LIMIT_KEY + "code:ip:1.1.1.1"));
+        assertTrue(template.getExpire(RedisConstants.RATE_LIMIT_KEY + "code:ip:1.1.1.1", TimeUnit.MILLISECONDS) > 0);
+    }
+
+    @Test
+    void loginAndSessionScripts() {
+        LoginSessionStore node1 = new LoginSessionStore(template, 100, 60, 0.5, "packed");
+        LoginSessionStore node2 = new LoginSessionStore(template, 100, 60, 0.5, "packed");
+        String phone = "13686869696";
+        String codeKey = RedisConstants.LOGIN_CODE_KEY + phone;
+
+        // 1.验证码错误时不消费验证码
+        template.opsForValue().set(codeKey, "123456");
+        assertNull(node1.loginWithCode(phone, "654321", "t1"));
+        // 2.用户未缓存时只消费验证码
+        assertNull(node1.loginWithCode(phone, "123456", "t1").getUser());
+        assertFalse(template.hasKey(codeKey));
+        node1.save("t1", user(1L), phone);
+        // 3.用户已缓存时脚本写入登录态并返回用户和头像
+        template.opsForValue().set(codeKey, "111111");
+        assertEquals(user(1L), node1.loginWithCode(phone, "111111", "t2").getUser());
+        assertFalse(template.hasKey(codeKey));
+        assertTrue(template.getExpire(RedisConstants.LOGIN_USER_KEY + "t2", TimeUnit.MILLISECONDS) > 0);
+        // 4.其它节点通过脚本读取登录态和头像
+        assertEquals(user(1L), node2.get("t1"));
+        assertEquals(user(1L), node2.get("t2"));
+        assertNull(node2.get("missing"));
+    }
+
+    @Test
+    void versionBumpScriptInitialisesMissingKey() {
+        CacheVersionClient client = new CacheVersionClient(template);
+        long before = System.currentTimeMillis();
+        client.bump("shop:1");
+        long version = client.version("shop:1");
+        assertTrue(version > before, "version: " + version);
+        client.bump("shop:1");
+        assertEquals(version + 1, client.version("shop:1"));
+    }
+
+    private static RedisLockClient lockClient(long leaseSeconds) {
+        LockNotifier notifier = new LockNotifier(template);
+        ReflectionTestUtils.setField(notifier, "redisMessageListenerContainer", listenerContainer);
+        notifier.subscribe();
+        return new RedisLockClient(template, notifier, leaseSeconds);
+    }
+
+    private static UserDTO user(Long id) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setNickName("用户" + id);
+        user.setIcon("/imgs/icons/" + id + ".jpg");
+        return user;
+    }
+
+    private static void runInOtherThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        AtomicLong failed = new AtomicLong();
+        thread.setUncaughtExceptionHandler((t, e) -> failed.incrementAndGet());
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertEquals(0, failed.get());
+    }
+}
@@ -0,0 +1,129 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Shop;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class ShopBinaryCodecTest {
+
+    private final ShopBinaryCodec codec = new ShopBinaryCodec();
+
+    private static Shop shop() {
+        Shop shop = new Shop();
+        shop.setId(1L);
+        shop.setName("103茶餐厅");
+        shop.setTypeId(1L);
+        shop.setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg");
+        shop.setArea("大关");
+        shop.setAddress("金华路锦昌文华苑29号");
+        shop.setX(120.149192);
+        shop.setY(30.316078);
+        shop.setAvgPrice(80L);
+        shop.setSold(4215);
+        shop.setComments(3035);
+        shop.setScore(37);
+        shop.setOpenHours("10:00-22:00");
+        shop.setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+        shop.setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+        return shop;
+    }
+
+    @Test
+    void roundTrip() {
+        Shop shop = shop();
+        RedisData<Shop> decoded = codec.decode(codec.encode(shop));
+        assertNull(decoded.getExpireTime());
+        assertEquals(shop, decoded.getData());
+    }
+
+    @Test
+    void nullFieldsAreSkipped() {
+        Shop shop = new Shop();
+        shop.setId(2L);
+        shop.setName("只有名字");
+        assertEquals(shop, codec.decode(codec.encode(shop)).getData());
+    }
+
+    @Test
+    void logicalExpireEnvelope() {
+        LocalDateTime expireTime = LocalDateTime.of(2030, 1, 1, 12, 0, 0);
+        RedisData<Shop> decoded = codec.decode(codec.encodeWithLogicalExpire(shop(), expireTime));
+        assertEquals(expireTime, decoded.getExpireTime());
+        assertEquals(shop(), decoded.getData());
+    }
+
+    @Test
+    void unknownFieldsAreSkipped() {
+        byte[] bytes = codec.encode(shop());
+        // 追加新版本才有的字段：编号20的字符串、编号21的varint、编号22的fixed64
+        byte[] extra = {(byte) 0xA2, 0x01, 0x02, 'o', 'k', (byte) 0xA8, 0x01, (byte) 0x96, 0x01,
+                (byte) 0xB1, 0x01, 1, 2, 3, 4, 5, 6, 7, 8};
+        byte[] extended = Arrays.copyOf(bytes, bytes.length + extra.length);
+        System.arraycopy(extra, 0, extended, bytes.length, extra.length);
+        assertEquals(shop(), codec.decode(extended).getData());
+    }
+
+    @Test
+    void readsExistingJsonEntries() {
+        Shop shop = shop();
+        byte[] plain = JSONUtil.toJsonStr(shop).getBytes(StandardCharsets.UTF_8);
+        assertEquals(shop, codec.decode(plain).getData());
+
+        LocalDateTime expireTime = LocalDateTime.of(2030, 1, 1, 12, 0, 0);
+        byte[] logical = new JsonCacheCodec<>(Shop.class).encodeWithLogicalExpire(shop, expireTime);
+        RedisData<Shop> decoded = codec.decode(logical);
+        assertEquals(expireTime, decoded.getExpireTime());
+        assertEquals(shop, decoded.getData());
+    }
+
+    @Test
+    void smallerThanJson() {
+        Shop shop = shop();
+        byte[] binaryBytes = codec.encode(shop);
+        byte[] jsonBytes = new JsonCacheCodec<>(Shop.class).encode(shop);
+        log.info("size binary={}B json={}B", binaryBytes.length, jsonBytes.length);
+        assertTrue(binaryBytes.length < jsonBytes.length);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void compareCostWithJson() {
+        Shop shop = shop();
+        JsonCacheCodec<Shop> json = new JsonCacheCodec<>(Shop.class);
+        int iterations = 200_000;
+        // 预热
+        measure(codec, shop, iterations);
+        measure(json, shop, iterations);
+        long[] binary = measure(codec, shop, iterations);
+        long[] text = measure(json, shop, iterations);
+
+        log.info("encode binary={}ns/op json={}ns/op", binary[0], text[0]);
+        log.info("decode binary={}ns/op json={}ns/op", binary[1], text[1]);
+    }
+
+    private static long[] measure(CacheCodec<Shop> codec, Shop shop, int iterations) {
+        byte[] bytes = codec.encode(shop);
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.encode(shop).length;
+        }
+        long encode = (System.nanoTime() - start) / iterations;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.decode(bytes).getData().getSold();
+        }
+        long decode = (System.nanoTime() - start) / iterations;
+        assertTrue(sink > 0);
+        return new long[]{encode, decode};
+    }
+}
@@ -0,0 +1,164 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class ShopNameIndexTest {
+
+    private static final String CHARS = "海底捞火锅烤肉茶餐厅老北京涮羊肉寿司店咖啡奶面馆小吃烧烤酒吧农家菜鱼西湖湘川粤";
+    private static final String[] SUFFIXES = {"(运河上街店)", "（西湖店）", "KTV", "·总店", ""};
+
+    @Test
+    void searchMatchesContainsScanAndRanksByMatchAndPopularity() {
+        ShopNameIndex index = new ShopNameIndex();
+        Random random = new Random(1);
+        List<String> names = new ArrayList<>();
+        for (int id = 0; id < 5000; id++) {
+            String name = randomName(random);
+            names.add(name);
+            index.put(id, name, random.nextInt(50), random.nextInt(10000));
+        }
+        for (String keyword : Arrays.asList("火锅", "海", "老北京", "ktv", "西湖店", "寿司店咖")) {
+            Set<Long> expected = new HashSet<>();
+            for (int id = 0; id < names.size(); id++) {
+                if (ShopNameIndex.normalize(names.get(id)).contains(ShopNameIndex.normalize(keyword))) {
+                    expected.add((long) id);
+                }
+            }
+            List<ShopNameIndex.Hit> hits = index.search(keyword, null, Integer.MAX_VALUE);
+            assertEquals(expected, hits.stream().map(ShopNameIndex.Hit::getId).collect(Collectors.toSet()), keyword);
+            for (int i = 1; i < hits.size(); i++) {
+                assertTrue(hits.get(i - 1).getRank() >= hits.get(i).getRank());
+            }
+        }
+
+        // 完全匹配和前缀匹配排在销量更高的包含匹配之前
+        index = new ShopNameIndex();
+        index.put(10001, "外婆家火锅", 50, 99999);
+        index.put(10002, "火锅", 10, 1);
+        index.put(10003, "火锅大王", 10, 1);
+        List<ShopNameIndex.Hit> hits = index.search("火锅", null, 3);
+        assertEquals(Arrays.asList(10002L, 10003L), hits.subList(0, 2).stream().map(ShopNameIndex.Hit::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void cursorPagingVisitsEveryHitOnce() {
+        ShopNameIndex index = new ShopNameIndex();
+        for (int id = 0; id < 1000; id++) {
+            // 大量排序值相同的结果，翻页时依靠id区分
+            index.put(id, "茶餐厅" + (id % 7), id % 3, 100);
+        }
+        List<Long> visited = new ArrayList<>();
+        ShopNameIndex.Hit after = null;
+        while (true) {
+            List<ShopNameIndex.Hit> page = index.search("餐厅", after, 10);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(hit -> visited.add(hit.getId()));
+            after = page.get(page.size() - 1);
+        }
+        assertEquals(1000, visited.size());
+        assertEquals(1000, new HashSet<>(visited).size());
+    }
+
+    @Test
+    void updateReplacesOldNameAndCompactsDeletedDocs() {
+        ShopNameIndex index = new ShopNameIndex();
+        index.put(1, "103茶餐厅", 37, 4215);
+        assertEquals(1, index.search("茶餐", null, 10).size());
+        index.put(1, "开乐迪KTV", 37, 4215);
+        assertTrue(index.search("茶餐", null, 10).isEmpty());
+        assertEquals(1, index.search("乐迪k", null, 10).size());
+
+        // 反复更新触发重建，结果不变
+        for (int round = 0; round < 5; round++) {
+            for (long id = 100; id < 2100; id++) {
+                index.put(id, "烧烤" + round + "号", 40, (int) id);
+            }
+        }
+        assertEquals(2001, index.size());
+        assertEquals(2000, index.search("烧烤4", null, Integer.MAX_VALUE).size());
+        assertTrue(index.search("烧烤3", null, 10).isEmpty());
+        index.remove(1);
+        assertTrue(index.search("ktv", null, 10).isEmpty());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void answersQueriesWithHundredsOfThousandsOfShops() {
+        ShopNameIndex index = new ShopNameIndex();
+        Random random = new Random(2);
+        // 名称由品牌、随机字和分店名组成，品牌和分店名在大量店铺之间重复
+        String[] brands = new String[500];
+        String[] branches = new String[200];
+        for (int i = 0; i < brands.length; i++) {
+            brands[i] = randomChars(random, 2 + random.nextInt(3));
+        }
+        for (int i = 0; i < branches.length; i++) {
+            branches[i] = "(" + randomChars(random, 2 + random.nextInt(3)) + "店)";
+        }
+        int shops = 300_000;
+        List<String> names = new ArrayList<>(shops);
+        long begin = System.nanoTime();
+        for (int id = 0; id < shops; id++) {
+            String name = brands[random.nextInt(brands.length)] + randomChars(random, random.nextInt(4))
+                    + branches[random.nextInt(branches.length)];
+            names.add(name);
+            index.put(id, name, random.nextInt(50), random.nextInt(100000));
+        }
+        long buildMillis = (System.nanoTime() - begin) / 1_000_000;
+
+        int queries = 5000;
+        String[] keywords = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            // 取名称中的一段作为关键字，长度1~4
+            String name = ShopNameIndex.normalize(names.get(random.nextInt(shops)));
+            int len = Math.min(name.length(), 1 + random.nextInt(4));
+            int start = random.nextInt(name.length() - len + 1);
+            keywords[i] = name.substring(start, start + len);
+        }
+        for (String keyword : keywords) {
+            index.search(keyword, null, 10);
+        }
+        long[] costs = new long[queries];
+        for (int i = 0; i < queries; i++) {
+            long t = System.nanoTime();
+            index.search(keywords[i], null, 10);
+            costs[i] = System.nanoTime() - t;
+        }
+        Arrays.sort(costs);
+        long p50 = costs[queries / 2] / 1000, p90 = costs[queries * 9 / 10] / 1000, p99 = costs[queries * 99 / 100] / 1000;
+        log.info("name-index build={}ms shops={} search p50={}us p90={}us p99={}us", buildMillis, shops, p50, p90, p99);
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int len = 3 + random.nextInt(6);
+        for (int i = 0; i < len; i++) {
+            sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return sb.append(SUFFIXES[random.nextInt(SUFFIXES.length)]).toString();
+    }
+
+    // 从常用汉字范围内随机取字
+    private static String randomChars(Random random, int len) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            sb.append((char) (0x4E00 + random.nextInt(2500)));
+        }
+        return sb.toString();
+    }
+}
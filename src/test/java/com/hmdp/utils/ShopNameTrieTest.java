@@ -0,0 +1,117 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class ShopNameTrieTest {
+
+    @Test
+    void suggestMatchesPrefixScanUnderUpdatesAndRemovals() {
+        ShopNameTrie trie = new ShopNameTrie(5);
+        Random random = new Random(1);
+        // id -> {名称, 评分, 销量}
+        Map<Long, Object[]> shops = new HashMap<>();
+        for (int round = 0; round < 20_000; round++) {
+            long id = random.nextInt(3000);
+            if (random.nextInt(5) == 0) {
+                trie.remove(id);
+                shops.remove(id);
+            } else {
+                // 字符集很小，名称之间有大量公共前缀
+                String name = randomName(random, "火锅烤肉茶餐厅", 1 + random.nextInt(6));
+                int score = random.nextInt(50), sold = random.nextInt(100);
+                trie.put(id, name, score, sold);
+                shops.put(id, new Object[]{name, score, sold});
+            }
+        }
+        assertEquals(shops.size(), trie.size());
+        for (String prefix : Arrays.asList("火", "火锅", "烤肉茶", "茶餐厅", "餐", "厅厅", "锅烤肉茶餐")) {
+            List<Long> expected = shops.entrySet().stream()
+                    .filter(e -> ((String) e.getValue()[0]).startsWith(prefix))
+                    .sorted(Comparator.<Map.Entry<Long, Object[]>>comparingInt(e -> (int) e.getValue()[2])
+                            .thenComparingInt(e -> (int) e.getValue()[1])
+                            .thenComparingLong(Map.Entry::getKey).reversed())
+                    .limit(5)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            assertEquals(expected, trie.suggest(prefix, 5), prefix);
+        }
+        assertTrue(trie.suggest("咖啡", 5).isEmpty());
+    }
+
+    @Test
+    void prefixEndingInsideAnEdgeAndCaseInsensitive() {
+        ShopNameTrie trie = new ShopNameTrie(10);
+        trie.put(1, "开乐迪KTV（运河上街店）", 37, 26891);
+        trie.put(2, "开乐迪KTV（水晶城店）", 40, 100);
+        assertEquals(Arrays.asList(1L, 2L), trie.suggest("开乐", 10));
+        assertEquals(Arrays.asList(1L, 2L), trie.suggest("开乐迪k", 10));
+        assertEquals(Arrays.asList(2L), trie.suggest("开乐迪ktv水", 10));
+        trie.put(1, "INLOVE KTV", 37, 26891);
+        assertEquals(Arrays.asList(2L), trie.suggest("开乐", 10));
+        assertEquals(Arrays.asList(1L), trie.suggest("inlove", 10));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void buildsAndAnswersWithOneMillionNames() {
+        ShopNameTrie trie = new ShopNameTrie(10);
+        Random random = new Random(2);
+        int shops = 1_000_000;
+        String[] brands = new String[2000];
+        for (int i = 0; i < brands.length; i++) {
+            brands[i] = randomName(random, null, 2 + random.nextInt(3));
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long begin = System.nanoTime();
+        for (int id = 0; id < shops; id++) {
+            String name = brands[random.nextInt(brands.length)] + randomName(random, null, 2 + random.nextInt(4));
+            trie.put(id, name, random.nextInt(50), random.nextInt(100000));
+        }
+        long buildMillis = (System.nanoTime() - begin) / 1_000_000;
+        System.gc();
+        long usedMb = (runtime.totalMemory() - runtime.freeMemory() - usedBefore) / 1024 / 1024;
+
+        int queries = 20_000;
+        String[] prefixes = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            String brand = brands[random.nextInt(brands.length)];
+            prefixes[i] = brand.substring(0, 1 + random.nextInt(brand.length()));
+        }
+        for (String prefix : prefixes) {
+            trie.suggest(prefix, 10);
+        }
+        long[] costs = new long[queries];
+        for (int i = 0; i < queries; i++) {
+            long t = System.nanoTime();
+            assertFalse(trie.suggest(prefixes[i], 10).isEmpty());
+            costs[i] = System.nanoTime() - t;
+        }
+        Arrays.sort(costs);
+        long p50 = costs[queries / 2] / 1000, p99 = costs[queries * 99 / 100] / 1000;
+        log.info("name-trie build={}ms names={} memory={}MB suggest p50={}us p99={}us",
+                buildMillis, shops, usedMb, p50, p99);
+    }
+
+    private static String randomName(Random random, String chars, int len) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            sb.append(chars == null ? (char) (0x4E00 + random.nextInt(2500)) : chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+}
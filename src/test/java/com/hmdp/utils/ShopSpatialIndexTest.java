@@ -0,0 +1,133 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class ShopSpatialIndexTest {
+
+    private static final int SHOPS = 1_000_000;
+    private static final int TYPES = 10;
+    private static final int QUERIES = 10_000;
+    // 约100公里见方的城市范围
+    private static final double MIN_X = 120.0, MIN_Y = 30.0, SPAN = 1.0;
+
+    @Test
+    void radiusAndNearestMatchLinearScan() {
+        ShopSpatialIndex index = new ShopSpatialIndex(0.01);
+        Random random = new Random(1);
+        int n = 20_000;
+        double[][] shops = new double[n][];
+        for (int id = 0; id < n; id++) {
+            shops[id] = new double[]{MIN_X + random.nextDouble() * 0.2, MIN_Y + random.nextDouble() * 0.2, id % 2};
+            index.put(id, id % 2, shops[id][0], shops[id][1]);
+        }
+        for (int q = 0; q < 200; q++) {
+            double x = MIN_X + random.nextDouble() * 0.2, y = MIN_Y + random.nextDouble() * 0.2;
+            List<ShopSpatialIndex.Neighbor> expected = linearScan(shops, 1, x, y, 2000);
+
+            List<ShopSpatialIndex.Neighbor> actual = index.radius(1, x, y, 2000, Integer.MAX_VALUE);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals(expected.get(i).getDistance(), actual.get(i).getDistance(), 1e-6);
+            }
+            List<ShopSpatialIndex.Neighbor> nearest = index.nearest(1, x, y, 10, 2000);
+            assertEquals(Math.min(10, expected.size()), nearest.size());
+            for (int i = 0; i < nearest.size(); i++) {
+                assertEquals(expected.get(i).getDistance(), nearest.get(i).getDistance(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void updateMovesShopBetweenTypesAndCells() {
+        ShopSpatialIndex index = new ShopSpatialIndex(0.01);
+        index.put(1, 1, 120.10, 30.10);
+        index.put(2, 1, 120.101, 30.10);
+        assertEquals(2, index.radius(1, 120.10, 30.10, 500, 10).size());
+
+        // 换类型并移动到5公里外
+        index.put(1, 2, 120.15, 30.10);
+        assertEquals(1, index.radius(1, 120.10, 30.10, 500, 10).size());
+        assertTrue(index.radius(2, 120.10, 30.10, 500, 10).isEmpty());
+        assertEquals(1, index.radius(2, 120.15, 30.10, 500, 10).get(0).getId());
+
+        index.remove(1);
+        assertTrue(index.radius(2, 120.15, 30.10, 500, 10).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void answersQueriesWithOneMillionShops() {
+        ShopSpatialIndex index = new ShopSpatialIndex(0.01);
+        Random random = new Random(2);
+        double[][] shops = new double[SHOPS][];
+        long begin = System.nanoTime();
+        for (int id = 0; id < SHOPS; id++) {
+            shops[id] = new double[]{MIN_X + random.nextDouble() * SPAN, MIN_Y + random.nextDouble() * SPAN, id % TYPES};
+            index.put(id, id % TYPES, shops[id][0], shops[id][1]);
+        }
+        long buildMillis = (System.nanoTime() - begin) / 1_000_000;
+
+        double[][] points = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            points[i] = new double[]{MIN_X + random.nextDouble() * SPAN, MIN_Y + random.nextDouble() * SPAN, random.nextInt(TYPES)};
+        }
+        // 预热JIT
+        for (int i = 0; i < QUERIES; i++) {
+            index.radius((long) points[i][2], points[i][0], points[i][1], 5000, 10);
+            index.nearest((long) points[i][2], points[i][0], points[i][1], 10, 5000);
+        }
+        long[] radius = measure(i -> index.radius((long) points[i][2], points[i][0], points[i][1], 5000, 10));
+        long[] nearest = measure(i -> index.nearest((long) points[i][2], points[i][0], points[i][1], 10, 5000));
+        // 对照：没有索引时只能扫描全部店铺
+        long scanBegin = System.nanoTime();
+        int scans = 20;
+        for (int i = 0; i < scans; i++) {
+            linearScan(shops, (long) points[i][2], points[i][0], points[i][1], 5000);
+        }
+        long scanMicros = (System.nanoTime() - scanBegin) / 1000 / scans;
+
+        log.info("spatial-index build={}ms shops={}", buildMillis, SHOPS);
+        log.info("radius(5km,10)  p50={}us p99={}us", radius[0], radius[1]);
+        log.info("nearest(k=10)   p50={}us p99={}us", nearest[0], nearest[1]);
+        log.info("linear-scan     avg={}us", scanMicros);
+    }
+
+    private long[] measure(IntConsumer query) {
+        long[] costs = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long begin = System.nanoTime();
+            query.accept(i);
+            costs[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(costs);
+        return new long[]{costs[QUERIES / 2] / 1000, costs[QUERIES * 99 / 100] / 1000};
+    }
+
+    private static List<ShopSpatialIndex.Neighbor> linearScan(double[][] shops, long typeId, double x, double y, double radius) {
+        List<ShopSpatialIndex.Neighbor> result = new ArrayList<>();
+        for (int id = 0; id < shops.length; id++) {
+            if ((long) shops[id][2] != typeId) {
+                continue;
+            }
+            double distance = ShopSpatialIndex.distance(x, y, shops[id][0], shops[id][1]);
+            if (distance <= radius) {
+                result.add(new ShopSpatialIndex.Neighbor(id, distance));
+            }
+        }
+        result.sort(Comparator.comparingDouble(ShopSpatialIndex.Neighbor::getDistance));
+        return result;
+    }
+}
@@ -0,0 +1,161 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import com.hmdp.interceptor.RefreshInterceptor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class SignedTokenServiceTest {
+
+    @Test
+    void verifiesLocallyRejectsTamperingAndRevokesAcrossNodes() {
+        FakeRedis redis = new FakeRedis(0);
+        SignedTokenService node1 = new SignedTokenService(redis.template(), "secret", "signed", 0.5, 60);
+        SignedTokenService node2 = new SignedTokenService(redis.template(), "secret", "signed", 0.5, 60);
+        redis.subscribe(RedisConstants.LOGIN_TOKEN_REVOKE_CHANNEL, message -> {
+            String[] parts = message.split(":");
+            node2.onRevoke(parts[0], Long.parseLong(parts[1]));
+        });
+        String token = node1.issue(user(1010L));
+
+        // 1.其它节点不访问redis即可校验
+        long before = redis.commandCount();
+        SignedTokenService.Claims claims = node2.verify(token);
+        assertEquals(before, redis.commandCount());
+        assertEquals(user(1010L), claims.getUser());
+        assertFalse(node2.shouldRenew(claims));
+
+        // 2.篡改内容、篡改签名、密钥不同都校验失败
+        String payload = token.substring(0, token.indexOf('.'));
+        String forged = node1.issue(user(1L));
+        assertNull(node2.verify(forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.'))));
+        assertNull(node2.verify(payload + ".AAAAAAAAAAAAAAAAAAAAAA"));
+        assertNull(node2.verify("not-a-token"));
+        assertNull(new SignedTokenService(redis.template(), "other", "signed", 0.5, 60).verify(token));
+
+        // 3.撤销后所有节点校验失败，同一用户的其它token不受影响
+        node1.revoke(token);
+        assertNull(node1.verify(token));
+        assertNull(node2.verify(token));
+        assertNotNull(node2.verify(forged));
+
+        // 4.续期比例为1时总是需要签发新token
+        SignedTokenService eager = new SignedTokenService(redis.template(), "secret", "signed", 1.0, 60);
+        assertTrue(eager.shouldRenew(eager.verify(forged)));
+        assertNull(node1.renew(node1.verify(forged)));
+    }
+
+    @Test
+    void renewsOncePerIntervalAndRevokesWholeSession() {
+        FakeRedis redis = new FakeRedis(0);
+        SignedTokenService node = new SignedTokenService(redis.template(), "secret", "signed", 1.0, 60);
+        String token = node.issue(user(1L));
+        String other = node.issue(user(1L));
+
+        // 1.续期间隔内仍使用旧token的请求得到同一个新token
+        String renewed = node.renew(node.verify(token));
+        assertNotNull(renewed);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(renewed, node.renew(node.verify(token)));
+        }
+        assertEquals(user(1L), node.verify(renewed).getUser());
+
+        // 2.撤销旧token时续期得到的token同样失效，同一用户的其它会话不受影响
+        node.revoke(token);
+        assertNull(node.verify(token));
+        assertNull(node.verify(renewed));
+        assertNotNull(node.verify(other));
+    }
+
+    @Test
+    void resyncPicksUpMissedRevocationsAndTrimsExpiredOnes() {
+        FakeRedis redis = new FakeRedis(0);
+        SignedTokenService node1 = new SignedTokenService(redis.template(), "secret", "signed", 0.5, 60);
+        // node2没有收到撤销通知
+        SignedTokenService node2 = new SignedTokenService(redis.template(), "secret", "signed", 0.5, 60);
+        String token = node1.issue(user(1L));
+        redis.template().opsForZSet().add(RedisConstants.LOGIN_REVOKED_KEY, "expired", 1);
+
+        node1.revoke(token);
+        assertNotNull(node2.verify(token));
+        // 定期同步后拒绝，已过期的记录从redis中删除
+        node2.resyncRevoked();
+        assertNull(node2.verify(token));
+        assertEquals(1L, redis.template().opsForZSet().zCard(RedisConstants.LOGIN_REVOKED_KEY));
+    }
+
+    @Test
+    void blankSecretFailsFastInSignedModeAndRejectsTokensOtherwise() {
+        FakeRedis redis = new FakeRedis(0);
+        assertThrows(IllegalStateException.class, () -> new SignedTokenService(redis.template(), " ", "signed", 0.5, 60));
+        // redis token模式下没有密钥，签名token一律校验失败
+        String token = new SignedTokenService(redis.template(), "secret", "signed", 0.5, 60).issue(user(1L));
+        SignedTokenService unsigned = new SignedTokenService(redis.template(), "", "redis", 0.5, 60);
+        assertNull(unsigned.verify(token));
+        assertThrows(IllegalStateException.class, () -> unsigned.issue(user(1L)));
+    }
+
+    /**
+     * 对比两种模式下RefreshInterceptor每个请求的耗时，redis往返按200微秒模拟
+     */
+    @Test
+    @Tag("benchmark")
+    void compareInterceptorCostOfRedisAndSignedTokens() throws Exception {
+        FakeRedis redis = new FakeRedis(200);
+        int tokens = 1000;
+        // 本地缓存只保存1个登录态，轮流使用不同的token时每次都要查询redis
+        LoginSessionStore missStore = new LoginSessionStore(redis.template(), 1, 60, 0.5, "packed");
+        LoginSessionStore hitStore = new LoginSessionStore(redis.template(), tokens, 60, 0.5, "packed");
+        SignedTokenService signed = new SignedTokenService(redis.template(), "secret", "signed", 0.5, 60);
+        String[] redisTokens = new String[tokens];
+        String[] signedTokens = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            redisTokens[i] = "token" + i;
+            missStore.save(redisTokens[i], user((long) i));
+            signedTokens[i] = signed.issue(user((long) i));
+        }
+
+        long redisMiss = measure(new RefreshInterceptor(missStore, signed), redisTokens, 2000);
+        long redisHit = measure(new RefreshInterceptor(hitStore, signed), redisTokens, 200_000);
+        long before = redis.commandCount();
+        long signedCost = measure(new RefreshInterceptor(missStore, signed), signedTokens, 200_000);
+        // 签名token不访问redis
+        assertEquals(before, redis.commandCount());
+
+        log.info("refresh-interceptor redis(miss)={}ns redis(local-hit)={}ns signed={}ns",
+                redisMiss, redisHit, signedCost);
+    }
+
+    // 返回每个请求的平均耗时，前一半请求用于预热
+    private static long measure(RefreshInterceptor interceptor, String[] tokens, int requests) throws Exception {
+        long begin = 0;
+        for (int i = 0; i < requests; i++) {
+            if (i == requests / 2) {
+                begin = System.nanoTime();
+            }
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/me");
+            request.addHeader("authorization", tokens[i % tokens.length]);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            interceptor.preHandle(request, response, null);
+            assertNotNull(UserHolder.getUser());
+            interceptor.afterCompletion(request, response, null, null);
+        }
+        return (System.nanoTime() - begin) / (requests - requests / 2);
+    }
+
+    private static UserDTO user(Long id) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setNickName("user_" + id);
+        user.setIcon("/imgs/icons/kkjtbcr.jpg");
+        return user;
+    }
+}
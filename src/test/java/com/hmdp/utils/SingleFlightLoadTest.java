@@ -0,0 +1,130 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Shop;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 冷热点key突发访问：两个节点各100个线程同时查询同一个未缓存的店铺，
+ * 对比原来的休眠重试互斥锁与单飞合并加锁等待通知两种方式的数据库查询次数与尾延迟
+ */
+@Slf4j
+@Tag("benchmark")
+public class SingleFlightLoadTest {
+
+    private static final String KEY = "cache:shop:1";
+    private static final int NODES = 2;
+    private static final int THREADS_PER_NODE = 100;
+    private static final long DB_MILLIS = 30;
+
+    @Test
+    void coldHotKeyBurst() throws Exception {
+        // 预热一轮
+        burst(false);
+        burst(true);
+
+        long[] legacy = burst(false);
+        long[] singleFlight = burst(true);
+        log.info("sleep-retry   dbLoads={} p50={}ms p99={}ms max={}ms", legacy[0], legacy[1], legacy[2], legacy[3]);
+        log.info("single-flight dbLoads={} p50={}ms p99={}ms max={}ms", singleFlight[0], singleFlight[1], singleFlight[2], singleFlight[3]);
+
+        assertEquals(1, singleFlight[0]);
+        assertTrue(singleFlight[0] <= legacy[0]);
+    }
+
+    private long[] burst(boolean useSingleFlight) throws Exception {
+        FakeRedis redis = new FakeRedis(100);
+        AtomicLong dbLoads = new AtomicLong();
+        Function<Long, Shop> dbFallback = id -> {
+            dbLoads.incrementAndGet();
+            sleep(DB_MILLIS);
+            return new Shop().setId(id).setName("103茶餐厅");
+        };
+
+        List<Callable<Long>> tasks = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int node = 0; node < NODES; node++) {
+            CacheClient cacheClient = redis.cacheClient();
+            StringRedisTemplate template = redis.template();
+            for (int i = 0; i < THREADS_PER_NODE; i++) {
+                tasks.add(() -> {
+                    start.await();
+                    long begin = System.nanoTime();
+                    Shop shop = useSingleFlight
+                            ? cacheClient.queryWithMutex("cache:shop:", 1L, Shop.class, dbFallback, 30L, TimeUnit.MINUTES)
+                            : legacyQueryWithMutex(template, 1L, dbFallback);
+                    assertEquals(1L, shop.getId());
+                    return System.nanoTime() - begin;
+                });
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        List<Future<Long>> futures = new ArrayList<>();
+        for (Callable<Long> task : tasks) {
+            futures.add(pool.submit(task));
+        }
+        start.countDown();
+        List<Long> latencies = new ArrayList<>();
+        for (Future<Long> future : futures) {
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(future.get()));
+        }
+        pool.shutdown();
+        Collections.sort(latencies);
+        return new long[]{dbLoads.get(), percentile(latencies, 0.5), percentile(latencies, 0.99), latencies.get(latencies.size() - 1)};
+    }
+
+    // 改造前ShopServiceImpl.queryWithMutex的做法：获取锁失败休眠50ms后重试
+    private Shop legacyQueryWithMutex(StringRedisTemplate template, Long id, Function<Long, Shop> dbFallback) throws InterruptedException {
+        while (true) {
+            String json = template.opsForValue().get(KEY);
+            if (StrUtil.isNotBlank(json)) {
+                return JSONUtil.toBean(json, Shop.class);
+            }
+            String lockKey = "lock:" + KEY;
+            if (!BooleanUtil.isTrue(template.opsForValue().setIfAbsent(lockKey, "1", 10, TimeUnit.SECONDS))) {
+                Thread.sleep(50);
+                continue;
+            }
+            try {
+                Shop shop = dbFallback.apply(id);
+                template.opsForValue().set(KEY, JSONUtil.toJsonStr(shop), 30, TimeUnit.MINUTES);
+                return shop;
+            } finally {
+                template.delete(lockKey);
+            }
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
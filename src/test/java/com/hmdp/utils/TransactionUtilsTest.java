@@ -0,0 +1,31 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TransactionUtilsTest {
+
+    @Test
+    void runsAfterCommitOrImmediatelyWithoutTransaction() {
+        AtomicInteger runs = new AtomicInteger();
+        // 没有事务时立即执行
+        TransactionUtils.afterCommit(runs::incrementAndGet);
+        assertEquals(1, runs.get());
+
+        // 事务中登记，提交后才执行
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            TransactionUtils.afterCommit(runs::incrementAndGet);
+            assertEquals(1, runs.get());
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            assertEquals(2, runs.get());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class UserHashCodecTest {
+
+    @Test
+    void readsAndWritesTheSameHashAsBeanUtil() {
+        UserDTO user = user();
+        Map<String, Object> legacy = beanUtilEncode(user);
+        assertEquals(legacy, new HashMap<>(UserHashCodec.encode(user)));
+        assertEquals(user, UserHashCodec.decode(legacy));
+        assertEquals(user, BeanUtil.fillBeanWithMap(UserHashCodec.encode(user), new UserDTO(), false));
+
+        // 为null的字段不写入
+        user.setIcon(null);
+        assertFalse(UserHashCodec.encode(user).containsKey(UserHashCodec.ICON));
+        assertEquals(user, UserHashCodec.decode(UserHashCodec.encode(user)));
+        assertNull(UserHashCodec.decode(new HashMap<>()));
+    }
+
+    /**
+     * 对比每个请求读取登录态的耗时，以及登录时写入登录态的耗时
+     */
+    @Test
+    @Tag("benchmark")
+    void compareWithBeanUtil() {
+        UserDTO user = user();
+        Map<String, String> hash = UserHashCodec.encode(user);
+        int rounds = 1_000_000;
+        long beanUtilDecode = measure(() -> BeanUtil.fillBeanWithMap(hash, new UserDTO(), false), rounds);
+        long codecDecode = measure(() -> UserHashCodec.decode(hash), rounds);
+        long beanUtilEncode = measure(() -> beanUtilEncode(user), rounds);
+        long codecEncode = measure(() -> UserHashCodec.encode(user), rounds);
+        log.info("user-hash decode beanUtil={}ns codec={}ns, encode beanUtil={}ns codec={}ns",
+                beanUtilDecode, codecDecode, beanUtilEncode, codecEncode);
+    }
+
+    // 返回每次调用的平均耗时，前一半调用用于预热
+    private static long measure(Supplier<Object> call, int rounds) {
+        long begin = 0;
+        int sink = 0;
+        for (int i = 0; i < rounds; i++) {
+            if (i == rounds / 2) {
+                begin = System.nanoTime();
+            }
+            sink += call.get().hashCode();
+        }
+        long cost = (System.nanoTime() - begin) / (rounds - rounds / 2);
+        return sink == 42 ? cost + 1 : cost;
+    }
+
+    // 原来登录时的写法
+    private static Map<String, Object> beanUtilEncode(UserDTO user) {
+        return BeanUtil.beanToMap(user, new HashMap<>(),
+                CopyOptions.create().setIgnoreNullValue(true).setFieldValueEditor((fieldName, fieldValue) -> fieldValue.toString()));
+    }
+
+    private static UserDTO user() {
+        UserDTO user = new UserDTO();
+        user.setId(1010L);
+        user.setNickName("可可今天不吃肉");
+        user.setIcon("/imgs/icons/kkjtbcr.jpg");
+        return user;
+    }
+}